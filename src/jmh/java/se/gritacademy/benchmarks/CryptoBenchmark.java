@@ -0,0 +1,75 @@
+package se.gritacademy.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.gritacademy.utils.CryptoEngine;
+import se.gritacademy.utils.CryptoUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the static CryptoUtil path (key hashing, Cipher lookup and Base64 per call) with the reusable CryptoEngine,
+ * and measures the binary envelope used for stored messages
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoBenchmark {
+
+    private static final String CRYPTO_KEY = "benchmark_crypto_key";
+
+    @Param({"64", "1024", "16384"})
+    private int messageSize;
+
+    private String message;
+    private CryptoEngine engine;
+    private String utilCiphertext;
+    private byte[] engineNonce;
+    private byte[] engineCiphertext;
+    private byte[] plaintext;
+    private byte[] envelope;
+
+    @Setup
+    public void setup() throws Exception {
+        message = "x".repeat(messageSize);
+        engine = new CryptoEngine(CRYPTO_KEY);
+        utilCiphertext = CryptoUtil.encryptMessage(message, CryptoUtil.hashKey(CRYPTO_KEY));
+        engineNonce = engine.newNonce();
+        engineCiphertext = engine.encryptString(message, engineNonce);
+        plaintext = message.getBytes(StandardCharsets.UTF_8);
+        envelope = engine.seal(plaintext);
+    }
+
+    @Benchmark
+    public String utilEncrypt() throws Exception {
+        return CryptoUtil.encryptMessage(message, CryptoUtil.hashKey(CRYPTO_KEY));
+    }
+
+    @Benchmark
+    public String utilDecrypt() throws Exception {
+        return CryptoUtil.decryptMessage(utilCiphertext, CryptoUtil.hashKey(CRYPTO_KEY));
+    }
+
+    @Benchmark
+    public byte[] engineEncrypt() throws Exception {
+        return engine.encryptString(message, engine.newNonce());
+    }
+
+    @Benchmark
+    public String engineDecrypt() throws Exception {
+        return engine.decryptToString(engineCiphertext, engineNonce);
+    }
+
+    @Benchmark
+    public byte[] envelopeSeal() throws Exception {
+        return engine.seal(plaintext);
+    }
+
+    @Benchmark
+    public byte[] envelopeOpen() throws Exception {
+        return engine.open(envelope);
+    }
+}
@@ -0,0 +1,37 @@
+package se.gritacademy.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.gritacademy.utils.HashingUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures PBKDF2 hashing and verification, the cost every registration and login pays on the hashing pool
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashingBenchmark {
+
+    private static final String PASSWORD = "Benchmark-Password-1!";
+
+    private String storedHash;
+
+    @Setup
+    public void setup() throws Exception {
+        storedHash = HashingUtil.hashPasswordWithPBKDF2(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() throws Exception {
+        return HashingUtil.hashPasswordWithPBKDF2(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        return HashingUtil.verifyPassword(PASSWORD, storedHash);
+    }
+}
@@ -0,0 +1,70 @@
+package se.gritacademy.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import se.gritacademy.models.UserInfo;
+import se.gritacademy.utils.JwtUtil;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures token generation and compares the previous per-request parser, the singleton parser and the verified-token cache in JwtUtil
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private SecretKey legacyKey;
+    private String legacyToken;
+    private String token;
+    private UserInfo user;
+
+    @Setup
+    public void setup() {
+        legacyKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        legacyToken = Jwts.builder()
+                .setSubject("user1@user.se")
+                .claim("role", "user")
+                .claim("blocked", false)
+                .setIssuedAt(Date.from(Instant.now()))
+                .setExpiration(Date.from(Instant.now().plusSeconds(60 * 60)))
+                .signWith(legacyKey, SignatureAlgorithm.HS256)
+                .compact();
+        user = new UserInfo("user1@user.se", "unused", "user");
+        token = JwtUtil.generateJwtToken(user);
+    }
+
+    @Benchmark
+    public String generate() {
+        return JwtUtil.generateJwtToken(user);
+    }
+
+    @Benchmark
+    public Claims parserPerRequest() {
+        return Jwts.parserBuilder()
+                .setSigningKey(legacyKey)
+                .build()
+                .parseClaimsJws(legacyToken)
+                .getBody();
+    }
+
+    @Benchmark
+    public Claims singletonParser() {
+        return JwtUtil.verifyJwtToken(token);
+    }
+
+    @Benchmark
+    public Claims verifiedTokenCache() {
+        return JwtUtil.parseJwtToken(token);
+    }
+}
@@ -0,0 +1,70 @@
+package se.gritacademy.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import se.gritacademy.MessageServerApplication;
+import se.gritacademy.dto.OutgoingMessage;
+import se.gritacademy.models.UserInfo;
+import se.gritacademy.repositories.UserRepository;
+import se.gritacademy.service.UserDirectory;
+import se.gritacademy.service.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second through the single-message path and the bulk path, against an in-memory H2 database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessageIngestionBenchmark {
+
+    private static final int BATCH = 500;
+    private static final String SENDER = "sender@bench.se";
+    private static final String RECEIVER = "receiver@bench.se";
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private List<OutgoingMessage> batch;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = SpringApplication.run(MessageServerApplication.class,
+                "--spring.main.web-application-type=none",
+                "--seed.demo-data=false");
+        context.getBean(UserRepository.class).saveAll(List.of(
+                new UserInfo(SENDER, "unused", "user"),
+                new UserInfo(RECEIVER, "unused", "user")));
+        context.getBean(UserDirectory.class).invalidate();
+        userService = context.getBean(UserService.class);
+        batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(new OutgoingMessage(RECEIVER, "Benchmark message number " + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void singleMessages() throws Exception {
+        for (OutgoingMessage message : batch) {
+            userService.encryptAndSaveMessage(SENDER, message.receiver(), message.message());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void bulkMessages() throws Exception {
+        userService.encryptAndSaveMessages(SENDER, batch);
+    }
+}
@@ -0,0 +1,72 @@
+package se.gritacademy.benchmarks;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Bucket4j;
+import io.github.bucket4j.Refill;
+import org.openjdk.jmh.annotations.*;
+import se.gritacademy.security.BucketStore;
+import se.gritacademy.security.IpKey;
+import se.gritacademy.security.RoutePolicyMatcher;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request work of RateLimitingFilter under contention: route matching, client key parsing and
+ * bucket lookup plus consume, with every thread hitting one hot client or a spread of clients
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class RateLimitBenchmark {
+
+    /**
+     * Large enough that buckets never run dry during a measurement, small enough that refill arithmetic cannot overflow
+     */
+    private static final long BUCKET_CAPACITY = 1_000_000_000L;
+
+    @Param({"1", "10000"})
+    private int clients;
+
+    private BucketStore<Object> buckets;
+    private RoutePolicyMatcher<String> routes;
+    private String[] addresses;
+
+    @Setup
+    public void setup() {
+        buckets = new BucketStore<>(() -> Bucket4j.builder()
+                .addLimit(Bandwidth.classic(BUCKET_CAPACITY, Refill.greedy(BUCKET_CAPACITY, Duration.ofSeconds(1))))
+                .build(), 100_000, Duration.ofMinutes(10));
+        routes = new RoutePolicyMatcher<>();
+        routes.add("/api/login", "auth");
+        routes.add("/api/register", "auth");
+        routes.add("/api/user/**", "api");
+        routes.add("/api/admin/**", "api");
+        addresses = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            addresses[i] = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+        }
+    }
+
+    @Benchmark
+    public String routeMatch() {
+        return routes.match("/api/user/messages");
+    }
+
+    @Benchmark
+    public IpKey parseClientKey() {
+        return IpKey.parse(addresses[ThreadLocalRandom.current().nextInt(clients)]);
+    }
+
+    @Benchmark
+    public boolean resolveAndConsume() {
+        Bucket bucket = buckets.resolve(IpKey.parse(addresses[ThreadLocalRandom.current().nextInt(clients)]));
+        return bucket.tryConsume(1);
+    }
+}
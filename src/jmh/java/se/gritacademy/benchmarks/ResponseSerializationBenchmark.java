@@ -0,0 +1,69 @@
+package se.gritacademy.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import se.gritacademy.dto.InboxMessage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building an inbox response from a HashMap per row with typed records written by their own serializer,
+ * run with -prof gc, gc.alloc.rate.norm is then the number of bytes allocated per message
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(ResponseSerializationBenchmark.ROWS)
+public class ResponseSerializationBenchmark {
+
+    static final int ROWS = 200;
+
+    private final OutputStream sink = OutputStream.nullOutputStream();
+    private ObjectMapper objectMapper;
+    private String[] senders;
+    private String[] plaintexts;
+    private Date[] dates;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        senders = new String[ROWS];
+        plaintexts = new String[ROWS];
+        dates = new Date[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            senders[i] = "user" + (i % 10) + "@user.se";
+            plaintexts[i] = "Message number " + i + " with a little bit of text in it";
+            dates[i] = new Date(1_700_000_000_000L + i * 1000L);
+        }
+    }
+
+    @Benchmark
+    public void hashMapRows() throws IOException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Map<String, Object> msgData = new HashMap<>();
+            msgData.put("sender", senders[i]);
+            msgData.put("receiver", "user1@user.se");
+            msgData.put("date", dates[i]);
+            msgData.put("message", plaintexts[i]);
+            rows.add(msgData);
+        }
+        objectMapper.writeValue(sink, rows);
+    }
+
+    @Benchmark
+    public void recordRows() throws IOException {
+        List<InboxMessage> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new InboxMessage(senders[i], "user1@user.se", dates[i], plaintexts[i]));
+        }
+        objectMapper.writeValue(sink, rows);
+    }
+}
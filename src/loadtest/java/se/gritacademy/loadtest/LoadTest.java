@@ -0,0 +1,417 @@
+package se.gritacademy.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import se.gritacademy.MessageServerApplication;
+import se.gritacademy.models.UserInfo;
+import se.gritacademy.repositories.UserRepository;
+import se.gritacademy.service.UserDirectory;
+import se.gritacademy.utils.HashingUtil;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the full HTTP flow. Requests are started at a fixed rate on virtual threads whether
+ * or not earlier ones have finished, and latency is measured from the moment a request was scheduled to start,
+ * so a stalled server shows up in the percentiles instead of silently lowering the request rate.
+ * <p>
+ * Without --base-url the application is booted in-process on a random port with an in-memory database, with
+ * request handling on platform or virtual threads (--mode). In virtual mode carrier-thread pinning is reported,
+ * and --mode=compare runs the same workload in both modes and prints the latencies side by side. Each compared run
+ * gets its own JVM and the order alternates over --rounds, so neither mode profits from the other's warm-up.
+ */
+public class LoadTest {
+
+    private static final String USER_PASSWORD = "LoadTest-User-1!";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration PINNING_THRESHOLD = Duration.ofMillis(1);
+    private static final String LATENCY_LOG = "latency.hlog";
+    private static final List<String> COMPARED_MODES = List.of("platform", "virtual");
+    private final LoadTestOptions options;
+    private final String baseUrl;
+    private final Path reportDirectory;
+    private final HttpClient httpClient;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicInteger registrations = new AtomicInteger();
+    private final Map<Scenario, Histogram> histograms = new EnumMap<>(Scenario.class);
+    private final Map<Scenario, LongAdder> errors = new EnumMap<>(Scenario.class);
+    private final List<String> userEmails = new ArrayList<>();
+    private final List<String> userTokens = new ArrayList<>();
+    private final Scenario[] mixScenarios;
+    private final int[] mixCumulativeWeights;
+    private String adminToken;
+
+    public LoadTest(LoadTestOptions options, String baseUrl, Path reportDirectory) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.reportDirectory = reportDirectory;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        for (Scenario scenario : Scenario.values()) {
+            histograms.put(scenario, new ConcurrentHistogram(3));
+            errors.put(scenario, new LongAdder());
+        }
+        this.mixScenarios = options.mix().keySet().toArray(new Scenario[0]);
+        this.mixCumulativeWeights = new int[mixScenarios.length];
+        int total = 0;
+        for (int i = 0; i < mixScenarios.length; i++) {
+            total += options.mix().get(mixScenarios[i]);
+            mixCumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        if (options.baseUrl() != null) {
+            new LoadTest(options, options.baseUrl(), Paths.get(options.reportDirectory())).run();
+        } else if (options.mode().equals("compare")) {
+            compareInForkedJvms(args, options);
+        } else {
+            runInProcess(options, options.mode());
+        }
+        System.exit(0);
+    }
+
+    private static Map<Scenario, Histogram> runInProcess(LoadTestOptions options, String mode) throws Exception {
+        boolean virtual = mode.equals("virtual");
+        ConfigurableApplicationContext context = startApplication(options, virtual);
+        try (PinningMonitor pinningMonitor = virtual ? new PinningMonitor(PINNING_THRESHOLD) : null) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            System.out.printf("%nRequest handling on %s threads%n", mode);
+            Map<Scenario, Histogram> histograms = new LoadTest(options, baseUrl, Paths.get(options.reportDirectory(), mode)).run();
+            if (pinningMonitor != null) {
+                pinningMonitor.report();
+            }
+            return histograms;
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Runs every mode once per round, each in a fresh JVM, with the order reversed in every other round.
+     * The forked runs write their latencies to a histogram log that is merged per mode for the comparison.
+     */
+    private static void compareInForkedJvms(String[] args, LoadTestOptions options) throws Exception {
+        List<String> forwardedArgs = Arrays.stream(args)
+                .filter(arg -> !arg.startsWith("--mode=") && !arg.startsWith("--report-dir=") && !arg.startsWith("--rounds="))
+                .toList();
+        Map<String, Map<Scenario, Histogram>> results = new LinkedHashMap<>();
+        for (String mode : COMPARED_MODES) {
+            results.put(mode, new EnumMap<>(Scenario.class));
+        }
+        for (int round = 1; round <= options.rounds(); round++) {
+            List<String> order = new ArrayList<>(COMPARED_MODES);
+            if (round % 2 == 0) {
+                Collections.reverse(order);
+            }
+            Path roundDirectory = Paths.get(options.reportDirectory(), "round-" + round);
+            for (String mode : order) {
+                System.out.printf("%nRound %d of %d: %s threads in a new JVM%n", round, options.rounds(), mode);
+                runForked(forwardedArgs, mode, roundDirectory);
+                mergeLatencyLog(roundDirectory.resolve(mode).resolve(LATENCY_LOG), results.get(mode));
+            }
+        }
+        printComparison(results);
+    }
+
+    private static void runForked(List<String> forwardedArgs, String mode, Path reportDirectory) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LoadTest.class.getName());
+        command.addAll(forwardedArgs);
+        command.add("--mode=" + mode);
+        command.add("--report-dir=" + reportDirectory);
+        int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Load test run with " + mode + " threads exited with code " + exitCode);
+        }
+    }
+
+    private static void mergeLatencyLog(Path latencyLog, Map<Scenario, Histogram> merged) throws IOException {
+        try (HistogramLogReader reader = new HistogramLogReader(latencyLog.toFile())) {
+            Histogram histogram;
+            while ((histogram = (Histogram) reader.nextIntervalHistogram()) != null) {
+                merged.computeIfAbsent(Scenario.fromName(histogram.getTag()), scenario -> new Histogram(3)).add(histogram);
+            }
+        }
+    }
+
+    /**
+     * Boots the application on a random port. The configured rate-limit policies are replaced by a single policy
+     * that still runs every request through the filter but cannot be exhausted, since all load comes from one IP.
+     */
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options, boolean virtualThreads) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(MessageServerApplication.class,
+                "--server.port=0",
+                "--management.server.port=0",
+                "--threads.virtual.enabled=" + virtualThreads,
+                "--seed.demo-data=false",
+                "--migration.envelope.enabled=false",
+                "--rate-limit.policies[0].name=loadtest",
+                "--rate-limit.policies[0].paths=/api/**",
+                "--rate-limit.policies[0].capacity=1000000000",
+                "--rate-limit.policies[0].refill-period=1s",
+                "--rate-limit.policies[0].key-by=ip");
+        context.getBean(UserRepository.class).save(new UserInfo(options.adminEmail(),
+                HashingUtil.hashPasswordWithPBKDF2(options.adminPassword()), "admin"));
+        context.getBean(UserDirectory.class).invalidate();
+        return context;
+    }
+
+    /**
+     * Runs the warmup and measured phases, prints the report and returns the measured latencies per endpoint
+     */
+    public Map<Scenario, Histogram> run() throws Exception {
+        System.out.printf("Load test against %s: %d req/s for %ds after %ds warmup, %d users, mix %s%n",
+                baseUrl, options.rate(), options.duration().toSeconds(), options.warmup().toSeconds(), options.users(), options.mix());
+        setUp();
+        runPhase(options.warmup());
+        resetStatistics();
+        long started = System.nanoTime();
+        runPhase(options.duration());
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        report(elapsedSeconds);
+        Map<Scenario, Histogram> measured = new EnumMap<>(Scenario.class);
+        histograms.forEach((scenario, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                measured.put(scenario, histogram.copy());
+            }
+        });
+        return measured;
+    }
+
+    /**
+     * Registers and logs in the test users and the admin, these requests are not part of the measured phase
+     */
+    private void setUp() throws IOException, InterruptedException {
+        for (int i = 0; i < options.users(); i++) {
+            String email = "loadtest-" + runId + "-" + i + "@loadtest.se";
+            sendWithRetry(registerRequest(email), 201);
+            userEmails.add(email);
+        }
+        for (String email : userEmails) {
+            userTokens.add(sendWithRetry(loginRequest(email, USER_PASSWORD), 200));
+        }
+        adminToken = sendWithRetry(loginRequest(options.adminEmail(), options.adminPassword()), 200);
+    }
+
+    /**
+     * Sends a setup request, retrying while the hashing pool reports that it is busy
+     */
+    private String sendWithRetry(HttpRequest request, int expectedStatus) throws IOException, InterruptedException {
+        while (true) {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == expectedStatus) {
+                return response.body();
+            }
+            if (response.statusCode() != 503) {
+                throw new IllegalStateException("Setup request " + request.uri() + " failed with " + response.statusCode() + ": " + response.body());
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * Starts requests at the target rate until the phase ends, then waits for the ones still in flight
+     */
+    private void runPhase(Duration length) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long start = System.nanoTime();
+        long end = start + length.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long intendedStart = start + i * intervalNanos;
+                if (intendedStart - end >= 0) {
+                    break;
+                }
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Scenario scenario = pickScenario();
+                executor.execute(() -> execute(scenario, intendedStart));
+            }
+        }
+    }
+
+    private void execute(Scenario scenario, long intendedStart) {
+        boolean success;
+        try {
+            HttpResponse<Void> response = httpClient.send(buildRequest(scenario), HttpResponse.BodyHandlers.discarding());
+            success = response.statusCode() < 400;
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        histograms.get(scenario).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart));
+        if (!success) {
+            errors.get(scenario).increment();
+        }
+    }
+
+    private Scenario pickScenario() {
+        int roll = ThreadLocalRandom.current().nextInt(mixCumulativeWeights[mixCumulativeWeights.length - 1]);
+        for (int i = 0; i < mixCumulativeWeights.length; i++) {
+            if (roll < mixCumulativeWeights[i]) {
+                return mixScenarios[i];
+            }
+        }
+        return mixScenarios[mixScenarios.length - 1];
+    }
+
+    private HttpRequest buildRequest(Scenario scenario) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(userEmails.size());
+        return switch (scenario) {
+            case REGISTER -> registerRequest("loadtest-" + runId + "-r" + registrations.incrementAndGet() + "@loadtest.se");
+            case LOGIN -> loginRequest(userEmails.get(user), USER_PASSWORD);
+            case SEND -> {
+                String receiver = userEmails.get(random.nextInt(userEmails.size()));
+                yield authorized("/api/user/messages", userTokens.get(user))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(form("receiver", receiver, "message", "Load test message " + random.nextInt(1_000_000)))
+                        .build();
+            }
+            case INBOX -> authorized("/api/user/messages", userTokens.get(user)).GET().build();
+            case USERS -> authorized("/api/user/users", userTokens.get(user)).GET().build();
+            case ADMIN_USERS -> authorized("/api/admin/users", adminToken).GET().build();
+            case ADMIN_MESSAGES -> authorized("/api/admin/messages", adminToken).GET().build();
+        };
+    }
+
+    private HttpRequest registerRequest(String email) {
+        return request("/api/register")
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(form("email", email, "password", USER_PASSWORD))
+                .build();
+    }
+
+    private HttpRequest loginRequest(String email, String password) {
+        return request("/api/login")
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(form("email", email, "password", password))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(String path, String token) {
+        return request(path).header("Authorization", "Bearer " + token);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private static HttpRequest.BodyPublisher form(String... keysAndValues) {
+        StringJoiner body = new StringJoiner("&");
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            body.add(keysAndValues[i] + "=" + URLEncoder.encode(keysAndValues[i + 1], StandardCharsets.UTF_8));
+        }
+        return HttpRequest.BodyPublishers.ofString(body.toString());
+    }
+
+    private void resetStatistics() {
+        histograms.values().forEach(Histogram::reset);
+        errors.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Prints a per-endpoint summary and writes each full percentile distribution as an .hgrm file
+     */
+    private void report(double elapsedSeconds) throws IOException {
+        Files.createDirectories(reportDirectory);
+        System.out.printf("%n%-15s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Scenario, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            String name = entry.getKey().getMixName();
+            System.out.printf("%-15s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    name,
+                    histogram.getTotalCount(),
+                    errors.get(entry.getKey()).sum(),
+                    histogram.getTotalCount() / elapsedSeconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+            try (PrintStream out = new PrintStream(Files.newOutputStream(reportDirectory.resolve(name + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        writeLatencyLog();
+        System.out.printf("%nPercentile distributions (milliseconds) written to %s%n", reportDirectory.toAbsolutePath());
+    }
+
+    /**
+     * Writes every endpoint's histogram, tagged with its name, to one log that a comparing parent process can read back
+     */
+    private void writeLatencyLog() throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(reportDirectory.resolve(LATENCY_LOG)))) {
+            HistogramLogWriter writer = new HistogramLogWriter(out);
+            writer.outputLogFormatVersion();
+            writer.outputLegend();
+            for (Map.Entry<Scenario, Histogram> entry : histograms.entrySet()) {
+                if (entry.getValue().getTotalCount() > 0) {
+                    entry.getValue().setTag(entry.getKey().getMixName());
+                    writer.outputIntervalHistogram(entry.getValue());
+                }
+            }
+        }
+    }
+
+    private static void printComparison(Map<String, Map<Scenario, Histogram>> results) {
+        System.out.printf("%n%-15s %-9s %8s %9s %9s %9s %9s%n", "endpoint", "mode", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Scenario scenario : Scenario.values()) {
+            for (Map.Entry<String, Map<Scenario, Histogram>> result : results.entrySet()) {
+                Histogram histogram = result.getValue().get(scenario);
+                if (histogram == null) {
+                    continue;
+                }
+                System.out.printf("%-15s %-9s %8d %9.2f %9.2f %9.2f %9.2f%n",
+                        scenario.getMixName(),
+                        result.getKey(),
+                        histogram.getTotalCount(),
+                        histogram.getValueAtPercentile(50) / 1000.0,
+                        histogram.getValueAtPercentile(99) / 1000.0,
+                        histogram.getValueAtPercentile(99.9) / 1000.0,
+                        histogram.getMaxValue() / 1000.0);
+            }
+        }
+    }
+}
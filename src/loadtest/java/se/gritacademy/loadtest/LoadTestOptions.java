@@ -0,0 +1,77 @@
+package se.gritacademy.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, parsed from --name=value arguments
+ */
+public record LoadTestOptions(String baseUrl,
+                              String mode,
+                              int rounds,
+                              int rate,
+                              Duration duration,
+                              Duration warmup,
+                              int users,
+                              Map<Scenario, Integer> mix,
+                              String adminEmail,
+                              String adminPassword,
+                              String reportDirectory) {
+
+    private static final String DEFAULT_MIX = "send=30,inbox=40,users=15,login=5,admin-users=5,admin-messages=5";
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(
+                values.get("base-url"),
+                parseMode(values.getOrDefault("mode", "platform")),
+                Integer.parseInt(values.getOrDefault("rounds", "2")),
+                Integer.parseInt(values.getOrDefault("rate", "200")),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "30"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "5"))),
+                Integer.parseInt(values.getOrDefault("users", "20")),
+                parseMix(values.getOrDefault("mix", DEFAULT_MIX)),
+                values.getOrDefault("admin-email", "loadtest-admin@loadtest.se"),
+                values.getOrDefault("admin-password", "LoadTest-Admin-1!"),
+                values.getOrDefault("report-dir", "build/reports/loadtest"));
+    }
+
+    /**
+     * Request threads of the in-process server: platform, virtual, or compare to run both in separate JVMs
+     */
+    private static String parseMode(String mode) {
+        if (!mode.equals("platform") && !mode.equals("virtual") && !mode.equals("compare")) {
+            throw new IllegalArgumentException("Mode must be platform, virtual or compare but was " + mode);
+        }
+        return mode;
+    }
+
+    /**
+     * Parses a scenario mix such as send=30,inbox=70 into relative weights
+     */
+    private static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1]);
+            if (weight > 0) {
+                weights.put(Scenario.fromName(parts[0]), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The scenario mix must contain at least one positive weight");
+        }
+        return weights;
+    }
+}
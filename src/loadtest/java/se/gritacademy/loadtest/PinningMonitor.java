@@ -0,0 +1,86 @@
+package se.gritacademy.loadtest;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listens for jdk.VirtualThreadPinned JFR events in this JVM, a virtual thread that blocks inside a synchronized
+ * block or native frame holds on to its carrier thread and quietly caps the number of concurrent requests
+ */
+public class PinningMonitor implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int REPORTED_SITES = 10;
+    private static final int REPORTED_FRAMES = 6;
+    private final RecordingStream recording = new RecordingStream();
+    private final Map<String, LongAdder> pinnedSites = new ConcurrentHashMap<>();
+    private final LongAdder pinnedEvents = new LongAdder();
+
+    public PinningMonitor(Duration threshold) {
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedEvents.increment();
+        pinnedSites.computeIfAbsent(describe(event), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * The innermost frames of the pinned stack below the parking machinery, enough to tell which call blocked
+     */
+    private static String describe(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "(no stack trace)";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        int first = 0;
+        while (first < frames.size() - 1 && isParkingFrame(frames.get(first))) {
+            first++;
+        }
+        StringBuilder site = new StringBuilder();
+        for (int i = first; i < Math.min(first + REPORTED_FRAMES, frames.size()); i++) {
+            RecordedFrame frame = frames.get(i);
+            site.append("\n      at ")
+                    .append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        return site.toString();
+    }
+
+    private static boolean isParkingFrame(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return type.equals("java.lang.VirtualThread") || type.equals("java.lang.Thread")
+                || type.equals("java.util.concurrent.locks.LockSupport") || type.startsWith("jdk.internal.misc.");
+    }
+
+    public long getPinnedEventCount() {
+        return pinnedEvents.sum();
+    }
+
+    public void report() {
+        if (pinnedEvents.sum() == 0) {
+            System.out.println("No virtual thread pinning detected");
+            return;
+        }
+        System.out.printf("Virtual threads were pinned %d times, most frequent sites:%n", pinnedEvents.sum());
+        pinnedSites.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                .limit(REPORTED_SITES)
+                .forEach(entry -> System.out.printf("  %d x%s%n", entry.getValue().sum(), entry.getKey()));
+    }
+
+    @Override
+    public void close() {
+        recording.close();
+    }
+}
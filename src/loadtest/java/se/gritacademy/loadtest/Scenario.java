@@ -0,0 +1,33 @@
+package se.gritacademy.loadtest;
+
+/**
+ * The endpoints a load test can exercise, named as in the scenario mix
+ */
+public enum Scenario {
+    REGISTER("register"),
+    LOGIN("login"),
+    SEND("send"),
+    INBOX("inbox"),
+    USERS("users"),
+    ADMIN_USERS("admin-users"),
+    ADMIN_MESSAGES("admin-messages");
+
+    private final String mixName;
+
+    Scenario(String mixName) {
+        this.mixName = mixName;
+    }
+
+    public String getMixName() {
+        return mixName;
+    }
+
+    public static Scenario fromName(String name) {
+        for (Scenario scenario : values()) {
+            if (scenario.mixName.equals(name)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario: " + name);
+    }
+}
@@ -0,0 +1,9 @@
+package se.gritacademy.audit;
+
+import java.time.Instant;
+
+/**
+ * A single audit event, actor is who caused it and target what it was applied to, both may be null
+ */
+public record AuditEvent(Instant timestamp, AuditEventType type, String actor, String target, String detail) {
+}
@@ -0,0 +1,19 @@
+package se.gritacademy.audit;
+
+/**
+ * Security relevant events written to the audit log
+ */
+public enum AuditEventType {
+    REGISTRATION,
+    LOGIN_SUCCESS,
+    LOGIN_FAILURE,
+    LOGIN_BLOCKED,
+    INVALID_TOKEN,
+    USER_BLOCKED,
+    USER_UNBLOCKED,
+    MESSAGE_DELETED,
+    MESSAGES_BULK_DELETED,
+    MESSAGES_PURGED,
+    DECRYPTION_FAILURE,
+    RATE_LIMIT_HIT
+}
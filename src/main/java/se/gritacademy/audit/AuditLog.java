@@ -0,0 +1,268 @@
+package se.gritacademy.audit;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Collects audit events from request threads in a lock-free ring buffer, a single writer thread
+ * drains it in batches and appends them to the audit file as JSON lines. The file is rolled over daily
+ * like application.log, and also when it reaches the size cap.
+ */
+@Component
+public class AuditLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long OVERFLOW_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private final AuditRingBuffer<AuditEvent> buffer;
+    private final AuditOverflowPolicy overflowPolicy;
+    private final long overflowWaitNanos;
+    private final int batchSize;
+    private final Path auditFile;
+    private final Pattern archiveName;
+    private final long maxFileSize;
+    private final int maxHistory;
+    private LocalDate fileDay;
+    private final JsonFactory jsonFactory;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    @Autowired
+    public AuditLog(@Value("${audit.file:logs/audit.jsonl}") String auditFile,
+                    @Value("${audit.buffer-size:8192}") int bufferSize,
+                    @Value("${audit.batch-size:256}") int batchSize,
+                    @Value("${audit.overflow-policy:drop}") AuditOverflowPolicy overflowPolicy,
+                    @Value("${audit.overflow-wait:50ms}") Duration overflowWait,
+                    @Value("${audit.max-file-size:100MB}") DataSize maxFileSize,
+                    @Value("${audit.max-history:30}") int maxHistory,
+                    ObjectMapper objectMapper,
+                    MeterRegistry meterRegistry) {
+        this.buffer = new AuditRingBuffer<>(bufferSize);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowWaitNanos = overflowWait.toNanos();
+        this.auditFile = Paths.get(auditFile);
+        this.archiveName = Pattern.compile(Pattern.quote(baseName()) + "-(\\d{4}-\\d{2}-\\d{2})(\\.\\d+)?" + Pattern.quote(extension()));
+        this.maxFileSize = maxFileSize.toBytes();
+        this.maxHistory = maxHistory;
+        this.jsonFactory = objectMapper.getFactory();
+        Gauge.builder("audit.events.queued", buffer, AuditRingBuffer::size)
+                .description("Audit events waiting for the writer thread")
+                .register(meterRegistry);
+        FunctionCounter.builder("audit.events.dropped", dropped, LongAdder::sum)
+                .description("Audit events dropped because the ring buffer was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("audit.events.written", written, LongAdder::sum)
+                .description("Audit events written to the audit file")
+                .register(meterRegistry);
+        this.writer = Thread.ofPlatform().name("audit-writer").daemon().start(this::writeLoop);
+        logger.info("Audit log writing to {} with a buffer of {} events, overflow policy {}",
+                this.auditFile, bufferSize, overflowPolicy);
+    }
+
+    /**
+     * Publishes an audit event without touching the disk, returns false if the event was dropped
+     */
+    public boolean record(AuditEventType type, String actor, String target, String detail) {
+        AuditEvent event = new AuditEvent(Instant.now(), type, actor, target, detail);
+        if (buffer.offer(event)) {
+            return true;
+        }
+        if (overflowPolicy == AuditOverflowPolicy.WAIT) {
+            long deadline = System.nanoTime() + overflowWaitNanos;
+            while (System.nanoTime() - deadline < 0) {
+                LockSupport.parkNanos(OVERFLOW_PARK_NANOS);
+                if (buffer.offer(event)) {
+                    return true;
+                }
+            }
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueuedCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Drains the ring buffer in batches into the current audit file, rolling it over whenever it is due
+     */
+    private void writeLoop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        boolean rollOver;
+        do {
+            try (OutputStream out = openAuditFile();
+                 JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+                rollOver = writeBatches(generator, batch);
+            } catch (IOException e) {
+                logger.error("Audit log writer stopped, could not open {}: {}", auditFile, e.getMessage());
+                return;
+            }
+            if (rollOver) {
+                rollOver();
+            }
+        } while (rollOver);
+    }
+
+    /**
+     * Writes batches, flushing the file after each batch and parking briefly when the buffer is empty. Returns true
+     * when the file is due to roll over and false once the log is stopped and drained.
+     */
+    private boolean writeBatches(JsonGenerator generator, List<AuditEvent> batch) {
+        while (running || buffer.size() > 0) {
+            if (LocalDate.now().isAfter(fileDay)) {
+                return true;
+            }
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                for (AuditEvent event : batch) {
+                    writeEvent(generator, event);
+                }
+                generator.flush();
+                written.add(batch.size());
+            } catch (IOException e) {
+                dropped.add(batch.size());
+                logger.error("Failed to write {} audit events: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+            if (isFull()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFull() {
+        try {
+            return Files.size(auditFile) >= maxFileSize;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private OutputStream openAuditFile() throws IOException {
+        Path directory = auditFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        fileDay = Files.exists(auditFile)
+                ? LocalDate.ofInstant(Files.getLastModifiedTime(auditFile).toInstant(), ZoneId.systemDefault())
+                : LocalDate.now();
+        return new BufferedOutputStream(Files.newOutputStream(auditFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 64 * 1024);
+    }
+
+    /**
+     * Renames the closed file to audit-yyyy-MM-dd.jsonl, or audit-yyyy-MM-dd.N.jsonl when the day rolled over before,
+     * and deletes archives older than the history
+     */
+    private void rollOver() {
+        try {
+            Path archive = auditFile.resolveSibling(baseName() + "-" + fileDay + extension());
+            for (int i = 1; Files.exists(archive); i++) {
+                archive = auditFile.resolveSibling(baseName() + "-" + fileDay + "." + i + extension());
+            }
+            Files.move(auditFile, archive, StandardCopyOption.ATOMIC_MOVE);
+            deleteExpiredArchives();
+        } catch (IOException e) {
+            logger.error("Could not roll over audit file {}: {}", auditFile, e.getMessage());
+        }
+    }
+
+    private void deleteExpiredArchives() throws IOException {
+        LocalDate oldestKept = LocalDate.now().minusDays(maxHistory);
+        try (Stream<Path> files = Files.list(auditFile.toAbsolutePath().getParent())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = archiveName.matcher(file.getFileName().toString());
+                if (matcher.matches() && LocalDate.parse(matcher.group(1)).isBefore(oldestKept)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private String baseName() {
+        String name = auditFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private String extension() {
+        String name = auditFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+
+    private void writeEvent(JsonGenerator generator, AuditEvent event) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("timestamp", event.timestamp().toString());
+        generator.writeStringField("type", event.type().name());
+        writeOptionalField(generator, "actor", event.actor());
+        writeOptionalField(generator, "target", event.target());
+        writeOptionalField(generator, "detail", event.detail());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeOptionalField(JsonGenerator generator, String name, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    /**
+     * Lets the writer drain what is left in the buffer before the application stops
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
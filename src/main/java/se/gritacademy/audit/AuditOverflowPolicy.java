@@ -0,0 +1,15 @@
+package se.gritacademy.audit;
+
+/**
+ * What a publishing thread does when the audit ring buffer is full
+ */
+public enum AuditOverflowPolicy {
+    /**
+     * Drop the event immediately and count it
+     */
+    DROP,
+    /**
+     * Wait up to audit.overflow-wait for the writer to make room, then drop the event
+     */
+    WAIT
+}
@@ -0,0 +1,116 @@
+package se.gritacademy.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import se.gritacademy.models.UserInfo;
+import se.gritacademy.repositories.UserRepository;
+import se.gritacademy.service.PasswordHashingService;
+import se.gritacademy.service.UserDirectory;
+import se.gritacademy.service.UserService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Seeds the demo users and messages from the fixtures in resources/seed on a background thread after startup.
+ * Disabled in the prod profile or with seed.demo-data=false, and skipped when users already exist.
+ */
+@Component
+@Profile("!prod")
+@ConditionalOnProperty(name = "seed.demo-data", havingValue = "true", matchIfMissing = true)
+public class DemoDataSeeder implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DemoDataSeeder.class);
+    private static final String USERS_FIXTURE = "seed/demo-users.csv";
+    private static final String MESSAGES_FIXTURE = "seed/demo-messages.csv";
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final UserDirectory userDirectory;
+    private final PasswordHashingService passwordHashingService;
+
+    @Autowired
+    public DemoDataSeeder(UserRepository userRepository, UserService userService, UserDirectory userDirectory,
+                          PasswordHashingService passwordHashingService) {
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.userDirectory = userDirectory;
+        this.passwordHashingService = passwordHashingService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread.ofPlatform().name("demo-seeder").daemon().start(this::seed);
+    }
+
+    private void seed() {
+        long start = System.nanoTime();
+        try {
+            if (userRepository.count() > 0) {
+                logger.info("Existing data found, skipping seeding of demo users and messages");
+                return;
+            }
+            List<UserInfo> users = loadUsers();
+            userRepository.saveAll(users);
+            userDirectory.invalidate();
+            List<String[]> messages = readFixture(MESSAGES_FIXTURE, 3);
+            for (String[] message : messages) {
+                userService.encryptAndSaveMessage(message[0], message[1], message[2]);
+            }
+            logger.info("Seeded {} demo users and {} demo messages in {} ms",
+                    users.size(), messages.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.error("Seeding of demo data failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Uses the precomputed hash from the fixture when present, remaining passwords are hashed in parallel on the hashing pool
+     */
+    private List<UserInfo> loadUsers() throws IOException {
+        List<CompletableFuture<UserInfo>> pending = new ArrayList<>();
+        for (String[] row : readFixture(USERS_FIXTURE, 4)) {
+            String email = row[0];
+            String role = row[1];
+            if (!row[3].isBlank()) {
+                pending.add(CompletableFuture.completedFuture(new UserInfo(email, row[3], role)));
+            } else {
+                pending.add(passwordHashingService.hash(row[2]).thenApply(hash -> new UserInfo(email, hash, role)));
+            }
+        }
+        return pending.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * Reads a comma separated fixture, skipping blank lines and comments, the last column may contain commas
+     */
+    private List<String[]> readFixture(String path, int columns) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(path).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] row = line.split(",", columns);
+                if (row.length != columns) {
+                    throw new IOException("Malformed line in " + path + ": " + line);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,18 @@
+package se.gritacademy.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Bounded pool for CPU-bound message decryption, kept separate from the common pool and the Tomcat workers
+     */
+    @Bean(destroyMethod = "shutdown")
+    public MessageCryptoPool messageCryptoPool(@Value("${inbox.crypto-parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new MessageCryptoPool(threads);
+    }
+}
@@ -0,0 +1,29 @@
+package se.gritacademy.config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Bounded pool for CPU-bound message encryption and decryption. Deliberately not an Executor, a bean of that type
+ * would stop Spring Boot from creating the applicationTaskExecutor used for MVC async work.
+ */
+public final class MessageCryptoPool {
+
+    private final ForkJoinPool pool;
+
+    public MessageCryptoPool(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Runs the task on the pool, parallel streams inside it split their work across the pool's threads
+     */
+    public <T> ForkJoinTask<T> submit(Callable<T> task) {
+        return pool.submit(task);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,71 @@
+package se.gritacademy.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves the id sequences past the existing rows before anything is inserted. Databases created while ids came from
+ * identity columns get their sequences from schema update starting at 1, below the ids that are already taken.
+ * Runs while the context starts, after the schema update and before the web server accepts requests.
+ */
+@Component
+public class SequenceAlignment {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceAlignment.class);
+    /**
+     * Must match allocationSize of the entities' @SequenceGenerator, the pooled optimizer hands out
+     * the ids from value - allocationSize + 1 up to the value it reads from the sequence
+     */
+    private static final int ALLOCATION_SIZE = 50;
+    private static final List<IdSequence> SEQUENCES = List.of(
+            new IdSequence("message_seq", "message"),
+            new IdSequence("user_info_seq", "user_info"));
+    private final JdbcTemplate jdbcTemplate;
+
+    private record IdSequence(String sequence, String table) {
+    }
+
+    /**
+     * The EntityManagerFactory is only injected so the schema update has created the sequences first
+     */
+    @Autowired
+    public SequenceAlignment(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        for (IdSequence idSequence : SEQUENCES) {
+            try {
+                align(idSequence);
+            } catch (DataAccessException e) {
+                logger.warn("Could not align sequence {} with table {}: {}", idSequence.sequence(), idSequence.table(), e.getMessage());
+            }
+        }
+    }
+
+    private void align(IdSequence idSequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + idSequence.table(), Long.class);
+        if (maxId == null) {
+            return;
+        }
+        Long nextValue = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?",
+                Long.class, idSequence.sequence().toUpperCase());
+        long required = maxId + ALLOCATION_SIZE;
+        if (nextValue != null && nextValue >= required) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER SEQUENCE " + idSequence.sequence() + " RESTART WITH " + required);
+        logger.info("Sequence {} restarted at {}, table {} already has ids up to {}",
+                idSequence.sequence(), required, idSequence.table(), maxId);
+    }
+}
@@ -0,0 +1,94 @@
+package se.gritacademy.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import se.gritacademy.repositories.MessageRepository;
+import se.gritacademy.repositories.UserRepository;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Logs how long the application took to become ready, where the boot time went and how much data it came back with
+ */
+@Component
+public class StartupReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupReporter.class);
+    private static final List<String> PHASES = List.of(
+            "spring.boot.application.environment-prepared",
+            "spring.boot.application.context-prepared",
+            "spring.boot.application.context-loaded",
+            "spring.context.refresh",
+            "spring.boot.application.started");
+    private static final int SLOWEST_BEANS = 5;
+    private final UserRepository userRepository;
+    private final MessageRepository messageRepository;
+    private final Environment environment;
+    private final ApplicationStartup applicationStartup;
+
+    @Autowired
+    public StartupReporter(UserRepository userRepository, MessageRepository messageRepository, Environment environment,
+                           ApplicationStartup applicationStartup) {
+        this.userRepository = userRepository;
+        this.messageRepository = messageRepository;
+        this.environment = environment;
+        this.applicationStartup = applicationStartup;
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        logger.info("Application ready in {} ms ({} ms since JVM start), profiles: {}, users: {}, messages: {}",
+                event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1,
+                ManagementFactory.getRuntimeMXBean().getUptime(),
+                Arrays.toString(environment.getActiveProfiles()),
+                userRepository.count(),
+                messageRepository.count());
+        if (applicationStartup instanceof BufferingApplicationStartup bufferingStartup) {
+            reportPhases(bufferingStartup.drainBufferedTimeline());
+        }
+    }
+
+    /**
+     * Logs the duration of the main startup phases, the JPA bootstrap and the slowest bean instantiations
+     */
+    private void reportPhases(StartupTimeline timeline) {
+        Map<String, Long> phaseMillis = new LinkedHashMap<>();
+        List<StartupTimeline.TimelineEvent> beans = new ArrayList<>();
+        for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+            String name = event.getStartupStep().getName();
+            if (PHASES.contains(name)) {
+                phaseMillis.merge(name, event.getDuration().toMillis(), Long::sum);
+            } else if ("spring.beans.instantiate".equals(name)) {
+                String beanName = beanName(event.getStartupStep());
+                if ("entityManagerFactory".equals(beanName)) {
+                    phaseMillis.put("jpa.bootstrap (entityManagerFactory)", event.getDuration().toMillis());
+                }
+                beans.add(event);
+            }
+        }
+        phaseMillis.forEach((phase, millis) -> logger.info("Startup phase {}: {} ms", phase, millis));
+        beans.stream()
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(SLOWEST_BEANS)
+                .forEach(event -> logger.info("Slow bean {}: {} ms", beanName(event.getStartupStep()), event.getDuration().toMillis()));
+    }
+
+    private String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return "unknown";
+    }
+}
@@ -4,19 +4,28 @@ import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import se.gritacademy.dto.AdminMessage;
+import se.gritacademy.dto.AdminUserSummary;
+import se.gritacademy.dto.MessageDeleteRequest;
 import se.gritacademy.repositories.MessageRepository;
 import se.gritacademy.repositories.UserRepository;
 import se.gritacademy.service.AdminService;
+import se.gritacademy.service.LogFileService;
+import se.gritacademy.service.LogSearchService;
 import se.gritacademy.utils.JwtUtil;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
@@ -26,11 +35,18 @@ public class AdminController {
 
     private final AdminService adminService;
     private final MessageRepository messageRepository;
+    private final LogFileService logFileService;
+    private final LogSearchService logSearchService;
+    private static final int MAX_LOG_SEARCH_RESULTS = 10000;
+    private static final int MAX_LOG_TAIL_LINES = 10000;
 
     @Autowired
-    public AdminController(AdminService adminService, MessageRepository MessageRepository) {
+    public AdminController(AdminService adminService, MessageRepository MessageRepository, LogFileService logFileService,
+                           LogSearchService logSearchService) {
         this.adminService = adminService;
         this.messageRepository = MessageRepository;
+        this.logFileService = logFileService;
+        this.logSearchService = logSearchService;
     }
 
     @GetMapping("/users")
@@ -40,7 +56,7 @@ public class AdminController {
         if (!adminService.isAdmin(claims)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
         }
-        List<Map<String, Object>> userResponse = adminService.getUsersForAdminResponse(claims.getSubject());
+        List<AdminUserSummary> userResponse = adminService.getUsersForAdminResponse(claims.getSubject());
         return ResponseEntity.ok(userResponse);
         } catch (Exception e) {
             return adminService.handleException(e,"Error while getting users for admin");
@@ -69,13 +85,30 @@ public class AdminController {
             if (!adminService.isAdmin(claims)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
             }
-            List<Map<String, Object>> messageList = adminService.buildMessageList(messageRepository.findAll(), claims.getSubject());
+            List<AdminMessage> messageList = adminService.buildMessageList(messageRepository.findAll(), claims.getSubject());
             return ResponseEntity.ok(messageList);
         } catch (Exception e) {
             return adminService.handleException(e, "Error occurred while fetching messages");
         }
     }
 
+    @GetMapping("/messages/export")
+    public ResponseEntity<?> exportMessagesForAdmin(@RequestHeader("Authorization") String token, @RequestParam(defaultValue = "json") String format) {
+        try {
+            Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
+            if (!adminService.isAdmin(claims)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
+            }
+            boolean ndjson = "ndjson".equalsIgnoreCase(format);
+            StreamingResponseBody body = out -> adminService.writeMessageExport(out, ndjson, claims.getSubject());
+            return ResponseEntity.ok()
+                    .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                    .body(body);
+        } catch (Exception e) {
+            return adminService.handleException(e, "Error occurred while exporting messages");
+        }
+    }
+
     @PostMapping("/delete")
     public ResponseEntity<String> deleteMessage(@RequestHeader("Authorization") String token, @RequestBody Map<String, Long> requestBody) {
         try {
@@ -90,20 +123,81 @@ public class AdminController {
         }
     }
 
+    @PostMapping("/messages/delete")
+    public ResponseEntity<String> deleteMessages(@RequestHeader("Authorization") String token, @RequestBody MessageDeleteRequest request) {
+        try {
+            Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
+            if (!adminService.isAdmin(claims)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
+            }
+            return adminService.deleteMessages(request, claims.getSubject());
+        } catch (Exception e) {
+            return adminService.handleException(e, "Error while deleting messages");
+        }
+    }
+
     @GetMapping("/log")
-    public ResponseEntity<?> getLogFile(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getLogFile(@RequestHeader("Authorization") String token,
+                                        @RequestParam(required = false) String file,
+                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                        @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
         try {
             Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
             if (!adminService.isAdmin(claims)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
             }
-            byte[] fileContent = adminService.getLogFileContent(claims);
-            if (fileContent == null) {
+            Path logFile = logFileService.getLogFileForDownload(file, claims);
+            if (logFile == null) {
                 return ResponseEntity.status(404).body("Log file not found");
             }
-            return adminService.prepareLogFileResponse(fileContent);
+            boolean gzip = range == null && LogFileService.acceptsGzip(acceptEncoding);
+            return logFileService.prepareLogFileResponse(logFile, gzip);
         } catch (Exception e) {
             return adminService.handleException(e, "Error while downloading log file");
         }
     }
-}
\ No newline at end of file
+
+    @GetMapping("/log/files")
+    public ResponseEntity<?> getLogFiles(@RequestHeader("Authorization") String token) {
+        try {
+            Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
+            if (!adminService.isAdmin(claims)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
+            }
+            return ResponseEntity.ok(logFileService.listLogFiles());
+        } catch (Exception e) {
+            return adminService.handleException(e, "Error while listing log files");
+        }
+    }
+
+    @GetMapping("/log/search")
+    public ResponseEntity<?> searchLogs(@RequestHeader("Authorization") String token,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                        @RequestParam(required = false) String level,
+                                        @RequestParam(required = false) String logger,
+                                        @RequestParam(required = false) String contains,
+                                        @RequestParam(defaultValue = "1000") int limit,
+                                        @RequestParam(required = false) Integer tail) {
+        try {
+            Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
+            if (!adminService.isAdmin(claims)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
+            }
+            StreamingResponseBody body;
+            if (tail != null) {
+                int lines = Math.max(1, Math.min(tail, MAX_LOG_TAIL_LINES));
+                body = out -> logSearchService.tail(lines, out);
+            } else {
+                LogSearchService.LogQuery query = new LogSearchService.LogQuery(from, to, level, logger, contains,
+                        Math.max(1, Math.min(limit, MAX_LOG_SEARCH_RESULTS)));
+                body = out -> logSearchService.search(query, out);
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(body);
+        } catch (Exception e) {
+            return adminService.handleException(e, "Error while searching logs");
+        }
+    }
+}
@@ -7,6 +7,9 @@ import org.springframework.web.bind.annotation.*;
 import se.gritacademy.models.UserInfo;
 import se.gritacademy.service.AuthService;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("api/")
 @CrossOrigin(origins = "*")
@@ -20,32 +23,36 @@ public class AuthController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<String> register(@RequestParam String email, @RequestParam String password) {
+    public CompletableFuture<ResponseEntity<String>> register(@RequestParam String email, @RequestParam String password) {
         try {
             ResponseEntity<String> validationResponse = authService.validateInputs(email, password);
             if (validationResponse != null) {
-                return validationResponse;
+                return CompletableFuture.completedFuture(validationResponse);
             }
-            authService.createUser(email, password);
-            return ResponseEntity.status(HttpStatus.CREATED).body("User registered successfully");
+            return authService.createUser(email, password)
+                    .thenApply(created -> ResponseEntity.status(HttpStatus.CREATED).body("User registered successfully"))
+                    .exceptionally(e -> authService.handleAsyncException(e, "Error during registration"));
         } catch (Exception e) {
-            return authService.handleException(e, "Error during registration");
+            return CompletableFuture.completedFuture(authService.handleException(e, "Error during registration"));
         }
     }
 
     @PostMapping("/login")
-    public ResponseEntity<String> login(@RequestParam String email, @RequestParam String password) {
+    public CompletableFuture<ResponseEntity<String>> login(@RequestParam String email, @RequestParam String password) {
         try {
             UserInfo user = authService.findUserByEmail(email);
             ResponseEntity<String> validationResponse = authService.validateUserStatus(user);
             if (validationResponse != null) {
-                return validationResponse;
+                return CompletableFuture.completedFuture(validationResponse);
             }
-            return authService.verifyPassword(password, user);
+            return authService.verifyPassword(password, user)
+                    .exceptionally(e -> authService.handleAsyncException(e, "Error during login"));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(authService.handleException(e, "Error during login"));
         } catch (RuntimeException e) {
-            return authService.handleFailedLoginAttempt(email);
+            return CompletableFuture.completedFuture(authService.handleFailedLoginAttempt(email));
         } catch (Exception e) {
-            return authService.handleException(e, "Error during login");
+            return CompletableFuture.completedFuture(authService.handleException(e, "Error during login"));
         }
     }
 
@@ -5,11 +5,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import se.gritacademy.dto.InboxMessage;
+import se.gritacademy.dto.OutgoingMessage;
+import se.gritacademy.dto.UserSummary;
 import se.gritacademy.models.Message;
 import se.gritacademy.repositories.MessageRepository;
 import se.gritacademy.repositories.UserRepository;
+import se.gritacademy.security.StreamTickets;
+import se.gritacademy.service.MessagePushService;
 import se.gritacademy.service.UserService;
 import se.gritacademy.utils.JwtUtil;
 
@@ -22,18 +31,23 @@ public class UserController {
 
     private final MessageRepository messageRepository;
     private final UserService userService;
+    private final MessagePushService messagePushService;
+    private final StreamTickets streamTickets;
 
     @Autowired
-    public UserController(MessageRepository messageRepository, UserService userService) {
+    public UserController(MessageRepository messageRepository, UserService userService, MessagePushService messagePushService,
+                          StreamTickets streamTickets) {
         this.messageRepository = messageRepository;
         this.userService = userService;
+        this.messagePushService = messagePushService;
+        this.streamTickets = streamTickets;
     }
 
     @GetMapping("/users")
     public ResponseEntity<?> getUsers(@RequestHeader("Authorization") String token) {
         try {
             Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
-            List<Map<String, String>> emails = userService.getUserList(claims.getSubject());
+            List<UserSummary> emails = userService.getUserList(claims.getSubject());
             return ResponseEntity.ok(emails);
         } catch (Exception e) {
             return userService.handleException(e, "Error while retrieving user list");
@@ -58,15 +72,81 @@ public class UserController {
         }
     }
 
+    @PostMapping("/messages/bulk")
+    public ResponseEntity<String> sendMessages(@RequestHeader("Authorization") String token, @RequestBody List<OutgoingMessage> messages) {
+        try {
+            Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
+            ResponseEntity<String> validation = userService.validateBulkMessages(messages);
+            if (validation != null) {
+                return validation;
+            }
+            return userService.encryptAndSaveMessages(claims.getSubject(), messages);
+        } catch (Exception e) {
+            return userService.handleException(e, "Error while sending messages");
+        }
+    }
+
     @GetMapping("/messages")
-    public ResponseEntity<?> getMessages(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getMessages(@RequestHeader("Authorization") String token,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String before,
+                                         @RequestParam(required = false) String since) {
         try {
             Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
+            String etag = userService.getInboxETag(claims.getSubject());
+            if (userService.matchesETag(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            if (since != null) {
+                return ResponseEntity.ok().eTag(etag).body(userService.getMessagesSince(claims.getSubject(), since));
+            }
+            if (limit != null || before != null) {
+                return ResponseEntity.ok().eTag(etag).body(userService.getMessagePage(claims.getSubject(), limit != null ? limit : 50, before));
+            }
             List<Message> messages = messageRepository.findByReceiverOrderByDateDesc(claims.getSubject());
-            List<Map<String, Object>> messageList = userService.decryptAllMessages(messages, claims.getSubject());
-            return ResponseEntity.ok(messageList);
+            List<InboxMessage> messageList = userService.decryptAllMessages(messages, claims.getSubject());
+            return ResponseEntity.ok().eTag(etag).body(messageList);
         } catch (Exception e) {
             return userService.handleException(e, "Error while fetching messages");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Exchanges the JWT for a short-lived single-use ticket that opens one message stream
+     */
+    @PostMapping("/messages/stream-ticket")
+    public ResponseEntity<?> issueStreamTicket(@RequestHeader("Authorization") String token) {
+        try {
+            Claims claims = JwtUtil.parseJwtToken(token.replace("Bearer ", ""));
+            return ResponseEntity.ok(Map.of("ticket", streamTickets.issue(claims.getSubject())));
+        } catch (Exception e) {
+            return userService.handleException(e, "Error while issuing stream ticket");
+        }
+    }
+
+    /**
+     * Streams new messages as Server-Sent Events, EventSource cannot set headers so it authenticates with a stream ticket
+     */
+    @GetMapping(value = "/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamMessages(@RequestHeader(value = "Authorization", required = false) String token,
+                                            @RequestParam(value = "ticket", required = false) String ticket) {
+        try {
+            String subject;
+            if (token != null) {
+                subject = JwtUtil.parseJwtToken(token.replace("Bearer ", "")).getSubject();
+            } else if (ticket != null) {
+                subject = streamTickets.redeem(ticket);
+                if (subject == null) {
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or expired stream ticket");
+                }
+            } else {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing JWT token or stream ticket");
+            }
+            SseEmitter emitter = messagePushService.subscribe(subject);
+            return ResponseEntity.ok(emitter);
+        } catch (Exception e) {
+            return userService.handleException(e, "Error while opening message stream");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package se.gritacademy.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * A stored message as listed to administrators, message is the Base64 ciphertext
+ */
+@JsonSerialize(using = AdminMessage.Serializer.class)
+public record AdminMessage(Long id, String sender, String recipient, String message, Date date) {
+
+    static class Serializer extends StdSerializer<AdminMessage> {
+
+        Serializer() {
+            super(AdminMessage.class);
+        }
+
+        @Override
+        public void serialize(AdminMessage message, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", message.id());
+            generator.writeStringField("sender", message.sender());
+            generator.writeStringField("recipient", message.recipient());
+            generator.writeStringField("message", message.message());
+            if (message.date() != null) {
+                generator.writeFieldName("date");
+                provider.defaultSerializeDateValue(message.date(), generator);
+            } else {
+                generator.writeNullField("date");
+            }
+            generator.writeEndObject();
+        }
+    }
+}
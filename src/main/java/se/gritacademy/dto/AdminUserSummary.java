@@ -0,0 +1,30 @@
+package se.gritacademy.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * A user as listed to administrators
+ */
+@JsonSerialize(using = AdminUserSummary.Serializer.class)
+public record AdminUserSummary(String email, boolean blocked) {
+
+    static class Serializer extends StdSerializer<AdminUserSummary> {
+
+        Serializer() {
+            super(AdminUserSummary.class);
+        }
+
+        @Override
+        public void serialize(AdminUserSummary user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("email", user.email());
+            generator.writeBooleanField("blocked", user.blocked());
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package se.gritacademy.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * A decrypted message in the receiver's inbox, message is null and error set when it could not be decrypted
+ */
+@JsonSerialize(using = InboxMessage.Serializer.class)
+public record InboxMessage(String sender, String receiver, Date date, String message, String error) {
+
+    public InboxMessage(String sender, String receiver, Date date, String message) {
+        this(sender, receiver, date, message, null);
+    }
+
+    static class Serializer extends StdSerializer<InboxMessage> {
+
+        Serializer() {
+            super(InboxMessage.class);
+        }
+
+        @Override
+        public void serialize(InboxMessage message, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("sender", message.sender());
+            generator.writeStringField("receiver", message.receiver());
+            if (message.date() != null) {
+                generator.writeFieldName("date");
+                provider.defaultSerializeDateValue(message.date(), generator);
+            } else {
+                generator.writeNullField("date");
+            }
+            generator.writeStringField("message", message.message());
+            if (message.error() != null) {
+                generator.writeStringField("error", message.error());
+            }
+            generator.writeEndObject();
+        }
+    }
+}
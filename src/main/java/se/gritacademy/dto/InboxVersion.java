@@ -0,0 +1,14 @@
+package se.gritacademy.dto;
+
+/**
+ * Message count and highest message id of an inbox, any send or delete changes at least one of them
+ */
+public record InboxVersion(Long count, Long maxId) {
+
+    /**
+     * Weak ETag for the inbox, the decrypted representation is not byte-stable so a strong tag would be wrong
+     */
+    public String toETag() {
+        return "W/\"" + count + "-" + (maxId != null ? maxId : 0) + "\"";
+    }
+}
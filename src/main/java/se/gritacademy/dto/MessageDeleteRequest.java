@@ -0,0 +1,15 @@
+package se.gritacademy.dto;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Bulk delete request, either a list of message ids or any combination of sender, receiver and a date range
+ * where from is inclusive and to is exclusive
+ */
+public record MessageDeleteRequest(List<Long> ids, String sender, String receiver, Date from, Date to) {
+
+    public boolean hasCriteria() {
+        return sender != null || receiver != null || from != null || to != null;
+    }
+}
@@ -0,0 +1,9 @@
+package se.gritacademy.dto;
+
+import java.util.List;
+
+/**
+ * One keyset page of the inbox, nextCursor is null on the last page
+ */
+public record MessagePage(List<InboxMessage> messages, String nextCursor) {
+}
@@ -0,0 +1,7 @@
+package se.gritacademy.dto;
+
+/**
+ * One message in a bulk send request
+ */
+public record OutgoingMessage(String receiver, String message) {
+}
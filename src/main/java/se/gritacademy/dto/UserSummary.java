@@ -0,0 +1,30 @@
+package se.gritacademy.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * A user as listed to other users
+ */
+@JsonSerialize(using = UserSummary.Serializer.class)
+public record UserSummary(String email, String role) {
+
+    static class Serializer extends StdSerializer<UserSummary> {
+
+        Serializer() {
+            super(UserSummary.class);
+        }
+
+        @Override
+        public void serialize(UserSummary user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("email", user.email());
+            generator.writeStringField("role", user.role());
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package se.gritacademy.models;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * Progress of re-encrypting messages to one target key, saved with every chunk so an interrupted rotation resumes
+ * after the last message id it finished
+ */
+@Entity
+public class KeyRotationCheckpoint {
+
+    @Id
+    @Column(length = 32)
+    private String targetKeyId;
+    @Column(nullable = false)
+    private long lastId;
+    @Column(nullable = false)
+    private long rotated;
+    @Column(nullable = false)
+    private long failed;
+    @Column(nullable = false)
+    private boolean completed;
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+
+    public KeyRotationCheckpoint() {
+    }
+
+    public KeyRotationCheckpoint(String targetKeyId) {
+        this.targetKeyId = targetKeyId;
+        this.updatedAt = new Date();
+    }
+
+    public String getTargetKeyId() {
+        return targetKeyId;
+    }
+    public long getLastId() {
+        return lastId;
+    }
+    public long getRotated() {
+        return rotated;
+    }
+    public long getFailed() {
+        return failed;
+    }
+    public boolean isCompleted() {
+        return completed;
+    }
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Records a finished chunk ending at the given message id
+     */
+    public void advance(long lastId, int rotated, int failed) {
+        this.lastId = lastId;
+        this.rotated += rotated;
+        this.failed += failed;
+        this.updatedAt = new Date();
+    }
+
+    /**
+     * Starts a new pass from the first message with fresh counts, used when a rotation is checked again for rows it
+     * missed or failed
+     */
+    public void restart() {
+        this.lastId = 0;
+        this.rotated = 0;
+        this.failed = 0;
+        this.completed = false;
+        this.updatedAt = new Date();
+    }
+
+    /**
+     * Marks the rotation complete, only when no message is left that is not sealed with the target key
+     */
+    public void complete() {
+        this.completed = true;
+        this.updatedAt = new Date();
+    }
+}
@@ -2,23 +2,39 @@ package se.gritacademy.models;
 
 import jakarta.persistence.*;
 
+import java.util.Base64;
 import java.util.Date;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_message_receiver_date_id", columnList = "receiver, date DESC, id DESC"),
+        @Index(name = "idx_message_date", columnList = "date")
+})
 public class Message {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_seq")
+    @SequenceGenerator(name = "message_seq", sequenceName = "message_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false)
     private String sender;
     @Column(nullable = false)
     private String receiver;
-    @Column(nullable = false)
+    /**
+     * Binary envelope: version byte, nonce and ciphertext with the auth tag appended
+     */
+    @Column(length = 65535)
+    private byte[] payload;
+    /**
+     * Id of the keyring key the payload was sealed with, null for rows written before key ids were recorded
+     */
+    @Column(length = 32)
+    private String keyId;
+    /**
+     * Legacy Base64 columns, only set on rows that have not been migrated to the binary envelope yet
+     */
     private String encryptedMessage;
-    @Column(nullable = false)
     private String nonce;
-    @Column(nullable = false)
     private String authTag;
     @Column(nullable = false)
     @Temporal(TemporalType.TIMESTAMP)
@@ -27,12 +43,11 @@ public class Message {
     public Message() {
     }
 
-    public Message(String sender, String receiver, String encryptedMessage, String nonce, String authTag, Date date) {
+    public Message(String sender, String receiver, String keyId, byte[] payload, Date date) {
         this.sender = sender;
         this.receiver = receiver;
-        this.encryptedMessage = encryptedMessage;
-        this.nonce = nonce;
-        this.authTag = authTag;
+        this.keyId = keyId;
+        this.payload = payload;
         this.date = date;
     }
 
@@ -45,6 +60,12 @@ public class Message {
     public String getReceiver() {
         return receiver;
     }
+    public byte[] getPayload() {
+        return payload;
+    }
+    public String getKeyId() {
+        return keyId;
+    }
     public String getEncryptedMessage() {
         return encryptedMessage;
     }
@@ -57,4 +78,21 @@ public class Message {
     public Date getDate() {
         return date;
     }
+
+    /**
+     * Returns the stored ciphertext as Base64 regardless of storage format, for display to admins
+     */
+    public String getEncodedCiphertext() {
+        return payload != null ? Base64.getEncoder().encodeToString(payload) : encryptedMessage;
+    }
+
+    /**
+     * Replaces the legacy Base64 columns with the binary envelope
+     */
+    public void migrateToPayload(byte[] payload) {
+        this.payload = payload;
+        this.encryptedMessage = null;
+        this.nonce = null;
+        this.authTag = null;
+    }
 }
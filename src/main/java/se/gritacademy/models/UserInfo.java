@@ -6,7 +6,8 @@ import jakarta.persistence.*;
 public class UserInfo {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_info_seq")
+    @SequenceGenerator(name = "user_info_seq", sequenceName = "user_info_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false, unique = true)
     private String email;
@@ -0,0 +1,7 @@
+package se.gritacademy.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import se.gritacademy.models.KeyRotationCheckpoint;
+
+public interface KeyRotationCheckpointRepository extends JpaRepository<KeyRotationCheckpoint, String> {
+}
@@ -1,11 +1,69 @@
 package se.gritacademy.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import se.gritacademy.dto.InboxVersion;
 import se.gritacademy.models.Message;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     List<Message> findByReceiverOrderByDateDesc(String receiver);
+
+    List<Message> findByReceiverOrderByDateDescIdDesc(String receiver, Pageable pageable);
+
+    List<Message> findByReceiverAndDateAfterOrderByDateDesc(String receiver, Date date);
+
+    @Query("SELECT new se.gritacademy.dto.InboxVersion(COUNT(m), MAX(m.id)) FROM Message m WHERE m.receiver = :receiver")
+    InboxVersion findInboxVersion(@Param("receiver") String receiver);
+
+    @Query("SELECT m FROM Message m WHERE m.receiver = :receiver " +
+            "AND (m.date < :date OR (m.date = :date AND m.id < :id)) " +
+            "ORDER BY m.date DESC, m.id DESC")
+    List<Message> findPageBefore(@Param("receiver") String receiver, @Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM Message m ORDER BY m.id")
+    Stream<Message> streamAllOrderById();
+
+    @Query("SELECT m FROM Message m WHERE m.payload IS NULL AND m.id > :afterId ORDER BY m.id")
+    List<Message> findLegacyAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.payload IS NOT NULL AND COALESCE(m.keyId, :defaultKeyId) <> :keyId " +
+            "AND m.id > :afterId ORDER BY m.id")
+    List<Message> findNotSealedWithAfter(@Param("keyId") String keyId, @Param("defaultKeyId") String defaultKeyId,
+                                         @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(m) FROM Message m WHERE COALESCE(m.keyId, :defaultKeyId) <> :keyId")
+    long countNotSealedWith(@Param("keyId") String keyId, @Param("defaultKeyId") String defaultKeyId);
+
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.payload IS NULL")
+    long countLegacy();
+
+    @Query("SELECT m.id FROM Message m WHERE m.date < :cutoff")
+    List<Long> findIdsOlderThan(@Param("cutoff") Date cutoff, Pageable pageable);
+
+    /**
+     * Deletes a single message without loading it first, returns the number of rows deleted
+     */
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.id = :id")
+    int deleteMessage(@Param("id") Long id);
+
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.id IN :ids")
+    int deleteMessagesByIds(@Param("ids") Collection<Long> ids);
 }
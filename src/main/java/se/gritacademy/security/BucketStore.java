@@ -0,0 +1,132 @@
+package se.gritacademy.security;
+
+import io.github.bucket4j.Bucket;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Rate-limiter buckets with a capped size and idle-time expiry, lookups of existing buckets are a plain lock-free map read
+ */
+public class BucketStore<K> {
+
+    private static final long TOUCH_GRANULARITY_NANOS = Duration.ofSeconds(1).toNanos();
+    private final ConcurrentHashMap<K, Entry> buckets = new ConcurrentHashMap<>();
+    private final Supplier<Bucket> bucketFactory;
+    private final int maxSize;
+    private final int lowWaterMark;
+    private final long idleTimeoutNanos;
+    private final LongAdder evictions = new LongAdder();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private record Candidate<K>(K key, Entry entry, long idleNanos) {
+    }
+
+    private static final class Entry {
+        private final Bucket bucket;
+        private volatile long lastAccessNanos;
+
+        private Entry(Bucket bucket, long now) {
+            this.bucket = bucket;
+            this.lastAccessNanos = now;
+        }
+    }
+
+    public BucketStore(Supplier<Bucket> bucketFactory, int maxSize, Duration idleTimeout) {
+        this.bucketFactory = bucketFactory;
+        this.maxSize = maxSize;
+        this.lowWaterMark = Math.max(0, Math.min(maxSize - 1, maxSize - maxSize / 10));
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * Returns the bucket for the key, creating it if needed and making room first when the store is full
+     */
+    public Bucket resolve(K key) {
+        long now = System.nanoTime();
+        Entry entry = buckets.get(key);
+        if (entry == null) {
+            if (buckets.size() >= maxSize) {
+                makeRoom(now);
+            }
+            entry = buckets.computeIfAbsent(key, k -> new Entry(bucketFactory.get(), now));
+        } else if (now - entry.lastAccessNanos > TOUCH_GRANULARITY_NANOS) {
+            entry.lastAccessNanos = now;
+        }
+        return entry.bucket;
+    }
+
+    /**
+     * Removes every bucket that has been idle longer than the idle timeout
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        evictionLock.lock();
+        try {
+            evictOlderThan(now, idleTimeoutNanos);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Evicts idle buckets, then the least recently used ones until the store is down to its low-water mark, so the
+     * next evictions are a tenth of the cap away and only the oldest buckets lose their state
+     */
+    private void makeRoom(long now) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (buckets.size() < maxSize) {
+                return;
+            }
+            evictOlderThan(now, idleTimeoutNanos);
+            int excess = buckets.size() - lowWaterMark;
+            if (excess > 0) {
+                evictLeastRecentlyUsed(now, excess);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Access times are snapshotted before sorting since they keep changing while requests come in
+     */
+    private void evictLeastRecentlyUsed(long now, int count) {
+        List<Candidate<K>> candidates = new ArrayList<>(buckets.size());
+        buckets.forEach((key, entry) -> candidates.add(new Candidate<>(key, entry, now - entry.lastAccessNanos)));
+        candidates.sort(Comparator.comparingLong((Candidate<K> candidate) -> candidate.idleNanos()).reversed());
+        for (int i = 0; i < count && i < candidates.size(); i++) {
+            Candidate<K> candidate = candidates.get(i);
+            if (buckets.remove(candidate.key(), candidate.entry())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private void evictOlderThan(long now, long thresholdNanos) {
+        buckets.values().removeIf(entry -> {
+            boolean idle = now - entry.lastAccessNanos > thresholdNanos;
+            if (idle) {
+                evictions.increment();
+            }
+            return idle;
+        });
+    }
+}
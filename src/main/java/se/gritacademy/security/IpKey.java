@@ -0,0 +1,72 @@
+package se.gritacademy.security;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Compact 128-bit key for an IPv4 address or an IPv6 /64 network. IPv4 addresses are stored in their IPv4-mapped
+ * IPv6 form, IPv6 addresses are keyed by their /64 prefix since a single client usually controls a whole /64
+ * and could otherwise get a fresh bucket for every source address it rotates through.
+ */
+public record IpKey(long high, long low) {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    /**
+     * Parses the address returned by getRemoteAddr, unparseable input falls back to a key derived from its hash
+     */
+    public static IpKey parse(String address) {
+        long ipv4 = parseIpv4(address);
+        if (ipv4 >= 0) {
+            return new IpKey(0L, IPV4_MAPPED_PREFIX | ipv4);
+        }
+        if (address.indexOf(':') >= 0) {
+            try {
+                return fromBytes(InetAddress.getByName(address).getAddress());
+            } catch (UnknownHostException | SecurityException e) {
+                // not an address literal, handled below
+            }
+        }
+        return new IpKey(Long.MIN_VALUE, address.hashCode());
+    }
+
+    /**
+     * Parses a dotted IPv4 address without allocating, returns -1 if the input is not one
+     */
+    private static long parseIpv4(String address) {
+        long result = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                result = (result << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+
+    private static IpKey fromBytes(byte[] bytes) {
+        if (bytes.length == 4) {
+            long ipv4 = ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+            return new IpKey(0L, IPV4_MAPPED_PREFIX | ipv4);
+        }
+        long prefix = 0;
+        for (int i = 0; i < 8; i++) {
+            prefix = (prefix << 8) | (bytes[i] & 0xFFL);
+        }
+        return new IpKey(prefix, 0L);
+    }
+}
@@ -0,0 +1,100 @@
+package se.gritacademy.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rate-limit policies declared under rate-limit.* in application.properties
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private int maxBuckets = 100_000;
+    private Duration bucketIdleTimeout = Duration.ofMinutes(10);
+    private List<Policy> policies = new ArrayList<>();
+
+    public enum KeyBy {
+        IP,
+        SUBJECT
+    }
+
+    public static class Policy {
+
+        private String name;
+        private List<String> paths = new ArrayList<>();
+        private long capacity;
+        private long refillTokens;
+        private Duration refillPeriod = Duration.ofSeconds(60);
+        private KeyBy keyBy = KeyBy.IP;
+        private String message = "Too many requests, please try again later";
+
+        public String getName() {
+            return name;
+        }
+        public List<String> getPaths() {
+            return paths;
+        }
+        public long getCapacity() {
+            return capacity;
+        }
+        public long getRefillTokens() {
+            return refillTokens > 0 ? refillTokens : capacity;
+        }
+        public Duration getRefillPeriod() {
+            return refillPeriod;
+        }
+        public KeyBy getKeyBy() {
+            return keyBy;
+        }
+        public String getMessage() {
+            return message;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+        public void setPaths(List<String> paths) {
+            this.paths = paths;
+        }
+        public void setCapacity(long capacity) {
+            this.capacity = capacity;
+        }
+        public void setRefillTokens(long refillTokens) {
+            this.refillTokens = refillTokens;
+        }
+        public void setRefillPeriod(Duration refillPeriod) {
+            this.refillPeriod = refillPeriod;
+        }
+        public void setKeyBy(KeyBy keyBy) {
+            this.keyBy = keyBy;
+        }
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+    public Duration getBucketIdleTimeout() {
+        return bucketIdleTimeout;
+    }
+    public List<Policy> getPolicies() {
+        return policies;
+    }
+
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+    public void setBucketIdleTimeout(Duration bucketIdleTimeout) {
+        this.bucketIdleTimeout = bucketIdleTimeout;
+    }
+    public void setPolicies(List<Policy> policies) {
+        this.policies = policies;
+    }
+}
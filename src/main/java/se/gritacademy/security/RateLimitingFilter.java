@@ -4,34 +4,82 @@ import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Bucket4j;
 import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import se.gritacademy.audit.AuditEventType;
+import se.gritacademy.audit.AuditLog;
+import se.gritacademy.utils.JwtUtil;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 public class RateLimitingFilter implements Filter {
 
     private static final Logger logger = LoggerFactory.getLogger(RateLimitingFilter.class);
-    private final ConcurrentMap<String, Bucket> apiBuckets = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Bucket> authBuckets = new ConcurrentHashMap<>();
+    private final RoutePolicyMatcher<RoutePolicy> routePolicies = new RoutePolicyMatcher<>();
+    private final List<RoutePolicy> policies = new ArrayList<>();
+    private final AuditLog auditLog;
+    private final StreamTickets streamTickets;
 
-    private Bucket createApiBucket() {
-        return Bucket4j.builder()
-                .addLimit(Bandwidth.classic(100, Refill.greedy(100, Duration.ofSeconds(60))))
-                .build();
+    /**
+     * A configured policy compiled together with its bucket store and request counters
+     */
+    private record RoutePolicy(RateLimitProperties.Policy config, BucketStore<Object> buckets, Counter accepted, Counter rejected) {
     }
 
-    private Bucket createAuthBucket() {
+    @Autowired
+    public RateLimitingFilter(RateLimitProperties properties, MeterRegistry meterRegistry, AuditLog auditLog,
+                              StreamTickets streamTickets) {
+        this.auditLog = auditLog;
+        this.streamTickets = streamTickets;
+        for (RateLimitProperties.Policy config : properties.getPolicies()) {
+            BucketStore<Object> buckets = new BucketStore<>(() -> createBucket(config), properties.getMaxBuckets(), properties.getBucketIdleTimeout());
+            RoutePolicy policy = new RoutePolicy(config, buckets,
+                    requestCounter(meterRegistry, config.getName(), "accepted"),
+                    requestCounter(meterRegistry, config.getName(), "rejected"));
+            for (String path : config.getPaths()) {
+                routePolicies.add(path, policy);
+            }
+            policies.add(policy);
+            registerBucketMetrics(meterRegistry, config.getName(), buckets);
+            logger.info("Rate limit policy \"{}\" on {}: {} requests per {} keyed by {}",
+                    config.getName(), config.getPaths(), config.getCapacity(), config.getRefillPeriod(), config.getKeyBy());
+        }
+    }
+
+    private void registerBucketMetrics(MeterRegistry meterRegistry, String bucketType, BucketStore<Object> store) {
+        Gauge.builder("rate-limit.buckets.size", store, BucketStore::size)
+                .tag("type", bucketType)
+                .register(meterRegistry);
+        FunctionCounter.builder("rate-limit.buckets.evictions", store, BucketStore::evictionCount)
+                .tag("type", bucketType)
+                .register(meterRegistry);
+    }
+
+    private Counter requestCounter(MeterRegistry meterRegistry, String bucketType, String outcome) {
+        return Counter.builder("rate-limit.requests")
+                .description("Requests checked against a rate-limit policy")
+                .tag("type", bucketType)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Bucket createBucket(RateLimitProperties.Policy config) {
         return Bucket4j.builder()
-                .addLimit(Bandwidth.classic(5, Refill.greedy(5, Duration.ofSeconds(60))))
+                .addLimit(Bandwidth.classic(config.getCapacity(), Refill.greedy(config.getRefillTokens(), config.getRefillPeriod())))
                 .build();
     }
 
@@ -41,12 +89,9 @@ public class RateLimitingFilter implements Filter {
             HttpServletRequest httpRequest = (HttpServletRequest) request;
             HttpServletResponse httpResponse = (HttpServletResponse) response;
             setCorsHeaders(httpResponse);
-            String ipAddress = httpRequest.getRemoteAddr();
-            String requestUri = httpRequest.getRequestURI();
-            if (requestUri.equals("/api/login") || requestUri.equals("/api/register")) {
-                handleRateLimiting(ipAddress, "auth", httpRequest, httpResponse, chain);
-            } else if (requestUri.startsWith("/api/messages")) {
-                handleRateLimiting(ipAddress, "api", httpRequest, httpResponse, chain);
+            RoutePolicy policy = routePolicies.match(normalizedPath(httpRequest));
+            if (policy != null) {
+                handleRateLimiting(policy, httpRequest, httpResponse, chain);
             } else {
                 chain.doFilter(request, response);
             }
@@ -56,6 +101,15 @@ public class RateLimitingFilter implements Filter {
         }
     }
 
+    /**
+     * Path as the container mapped it to the dispatcher: decoded, without ;path parameters and with duplicate slashes
+     * and dot segments resolved, so /api/login;x=1 or //api/login cannot reach a controller past its policy
+     */
+    private static String normalizedPath(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo != null ? request.getServletPath() + pathInfo : request.getServletPath();
+    }
+
     /**
      * Sets CORS headers for the response
      */
@@ -65,41 +119,62 @@ public class RateLimitingFilter implements Filter {
         response.setHeader("Access-Control-Allow-Headers", "Origin, Content-Type, Accept");
     }
     /**
-     * Handles rate limiting for a given IP address
+     * Handles rate limiting for the client the policy is keyed by
      */
-    private void handleRateLimiting(String ipAddress, String bucketType, HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
-        Bucket bucket = getRateLimiterBucket(ipAddress, bucketType);
+    private void handleRateLimiting(RoutePolicy policy, HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+        String ipAddress = request.getRemoteAddr();
+        Bucket bucket = policy.buckets().resolve(resolveClientKey(policy, request, ipAddress));
         if (bucket.tryConsume(1)) {
+            policy.accepted().increment();
             chain.doFilter(request, response);
-            return;
         } else {
-            handleRateLimitExceeded(bucketType, ipAddress, response);
+            policy.rejected().increment();
+            handleRateLimitExceeded(policy, ipAddress, request.getRequestURI(), response);
         }
     }
 
     /**
-     * Retrieves the appropriate rate limiter bucket based on type
+     * Keys the bucket by the JWT subject when the policy asks for it and a valid token or stream ticket is present,
+     * otherwise by IP address
      */
-    private Bucket getRateLimiterBucket(String ipAddress, String bucketType) {
-        if ("auth".equals(bucketType)) {
-            return authBuckets.computeIfAbsent(ipAddress, k -> createAuthBucket());
-        } else {
-            return apiBuckets.computeIfAbsent(ipAddress, k -> createApiBucket());
+    private Object resolveClientKey(RoutePolicy policy, HttpServletRequest request, String ipAddress) {
+        if (policy.config().getKeyBy() == RateLimitProperties.KeyBy.SUBJECT) {
+            String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+            if (authorization != null && authorization.startsWith("Bearer ")) {
+                try {
+                    return JwtUtil.parseJwtToken(authorization.substring(7)).getSubject();
+                } catch (RuntimeException e) {
+                    // invalid tokens are rejected by the controllers, limit them by IP address here
+                }
+            }
+            String ticket = request.getParameter("ticket");
+            if (ticket != null) {
+                String subject = streamTickets.peekSubject(ticket);
+                if (subject != null) {
+                    return subject;
+                }
+            }
+        }
+        return IpKey.parse(ipAddress);
+    }
+
+    /**
+     * Periodically removes buckets that have been idle longer than the idle timeout
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval:60000}")
+    public void evictIdleBuckets() {
+        for (RoutePolicy policy : policies) {
+            policy.buckets().evictIdle();
         }
     }
 
     /**
      * Handles the case when rate limit is exceeded
      */
-    private void handleRateLimitExceeded(String bucketType, String ipAddress, HttpServletResponse response) throws IOException {
-        logger.warn("Rate limiter (\"{}\") blocked request from IP: {}", bucketType, ipAddress);
+    private void handleRateLimitExceeded(RoutePolicy policy, String ipAddress, String path, HttpServletResponse response) throws IOException {
+        logger.warn("Rate limiter (\"{}\") blocked request from IP: {}", policy.config().getName(), ipAddress);
+        auditLog.record(AuditEventType.RATE_LIMIT_HIT, ipAddress, path, policy.config().getName());
         response.setStatus(429);
-        String message = "Too many requests, please try again later";
-        if ("auth".equals(bucketType)) {
-            message = "Too many login attempts, please try again later";
-        } else if ("api".equals(bucketType)) {
-            message = "Too many requests to the API, please try again later";
-        }
-        response.getWriter().write(message);
+        response.getWriter().write(policy.config().getMessage());
     }
-}
\ No newline at end of file
+}
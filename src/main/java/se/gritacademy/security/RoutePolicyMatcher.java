@@ -0,0 +1,70 @@
+package se.gritacademy.security;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Path-segment trie compiled once at startup, a lookup walks the request path once so its cost depends
+ * on the path depth and not on the number of policies. Patterns are exact paths such as /api/login or
+ * prefixes ending in /** such as /api/user/**, the longest matching pattern wins.
+ */
+public class RoutePolicyMatcher<T> {
+
+    private static final String WILDCARD_SUFFIX = "/**";
+    private final Node<T> root = new Node<>();
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private T exactValue;
+        private T prefixValue;
+    }
+
+    /**
+     * Adds a pattern, throws an IllegalArgumentException if it is already mapped
+     */
+    public void add(String pattern, T value) {
+        boolean prefix = pattern.endsWith(WILDCARD_SUFFIX);
+        String path = prefix ? pattern.substring(0, pattern.length() - WILDCARD_SUFFIX.length()) : pattern;
+        Node<T> node = root;
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.children.computeIfAbsent(segment, k -> new Node<>());
+            }
+        }
+        if ((prefix ? node.prefixValue : node.exactValue) != null) {
+            throw new IllegalArgumentException("Duplicate rate-limit pattern: " + pattern);
+        }
+        if (prefix) {
+            node.prefixValue = value;
+        } else {
+            node.exactValue = value;
+        }
+    }
+
+    /**
+     * Returns the value of the longest pattern matching the path, or null if none matches
+     */
+    public T match(String path) {
+        Node<T> node = root;
+        T match = node.prefixValue;
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                node = node.children.get(path.substring(start, end));
+                if (node == null) {
+                    return match;
+                }
+                if (node.prefixValue != null) {
+                    match = node.prefixValue;
+                }
+            }
+            start = end + 1;
+        }
+        return node.exactValue != null ? node.exactValue : match;
+    }
+}
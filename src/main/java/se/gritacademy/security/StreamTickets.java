@@ -0,0 +1,70 @@
+package se.gritacademy.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Short-lived single-use tickets for opening a message stream. EventSource cannot send an Authorization header,
+ * so the page exchanges its JWT for a ticket and only the ticket ever appears in a URL.
+ */
+@Component
+public class StreamTickets {
+
+    private static final int TICKET_BYTES = 32;
+    private final ConcurrentMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final long ttlNanos;
+
+    private record Ticket(String subject, long expiresAtNanos) {
+
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    @Autowired
+    public StreamTickets(@Value("${push.ticket-ttl:30s}") Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Issues a new ticket for the subject
+     */
+    public String issue(String subject) {
+        byte[] bytes = new byte[TICKET_BYTES];
+        secureRandom.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tickets.put(ticket, new Ticket(subject, System.nanoTime() + ttlNanos));
+        return ticket;
+    }
+
+    /**
+     * Returns the subject of a valid ticket without using it up, for keying the rate limiter
+     */
+    public String peekSubject(String ticket) {
+        Ticket entry = tickets.get(ticket);
+        return entry != null && !entry.isExpired(System.nanoTime()) ? entry.subject() : null;
+    }
+
+    /**
+     * Uses up the ticket and returns its subject, or null if it is unknown, already used or expired
+     */
+    public String redeem(String ticket) {
+        Ticket entry = tickets.remove(ticket);
+        return entry != null && !entry.isExpired(System.nanoTime()) ? entry.subject() : null;
+    }
+
+    @Scheduled(fixedDelayString = "${push.ticket-sweep-interval:60000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        tickets.values().removeIf(ticket -> ticket.isExpired(now));
+    }
+}
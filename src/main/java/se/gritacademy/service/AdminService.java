@@ -1,38 +1,73 @@
 package se.gritacademy.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.gritacademy.audit.AuditEventType;
+import se.gritacademy.audit.AuditLog;
+import se.gritacademy.dto.AdminMessage;
+import se.gritacademy.dto.AdminUserSummary;
+import se.gritacademy.dto.MessageDeleteRequest;
 import se.gritacademy.models.Message;
 import se.gritacademy.models.UserInfo;
 import se.gritacademy.repositories.MessageRepository;
 import se.gritacademy.repositories.UserRepository;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AdminService {
 
     private static final Logger logger = LoggerFactory.getLogger(AdminService.class);
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
     private final UserRepository userRepository;
     private final MessageRepository messageRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate transaction;
+    private final ObjectMapper objectMapper;
+    private final UserDirectory userDirectory;
+    private final AuditLog auditLog;
+    private final InboxVersions inboxVersions;
+    private final int maxBulkMessages;
 
     @Autowired
-    public AdminService(UserRepository userRepository, MessageRepository messageRepository) {
+    public AdminService(UserRepository userRepository, MessageRepository messageRepository, EntityManager entityManager,
+                        PlatformTransactionManager transactionManager, ObjectMapper objectMapper, UserDirectory userDirectory,
+                        AuditLog auditLog, InboxVersions inboxVersions,
+                        @Value("${bulk.max-messages:1000}") int maxBulkMessages) {
         this.userRepository = userRepository;
         this.messageRepository = messageRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.userDirectory = userDirectory;
+        this.auditLog = auditLog;
+        this.inboxVersions = inboxVersions;
+        this.maxBulkMessages = maxBulkMessages;
     }
 
     /**
@@ -49,10 +84,15 @@ public class AdminService {
     public ResponseEntity<String> handleException(Exception e, String errorMessage) {
         if (e instanceof ExpiredJwtException) {
             logger.warn("JWT token has expired: {}", e.getMessage());
+            auditLog.record(AuditEventType.INVALID_TOKEN, null, null, "expired");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("JWT token has expired");
         } else if (e instanceof JwtException) {
             logger.warn("Invalid JWT token: {}", e.getMessage());
+            auditLog.record(AuditEventType.INVALID_TOKEN, null, null, e.getClass().getSimpleName());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid JWT token");
+        } else if (e instanceof IllegalArgumentException) {
+            logger.warn("Invalid request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } else if (e instanceof IOException) {
             logger.error("I/O error occurred: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("I/O error occurred: " + errorMessage);
@@ -65,18 +105,9 @@ public class AdminService {
     /**
      * Retrieves the user list and filters out the logged in administrator
      */
-    public List<Map<String, Object>> getUsersForAdminResponse(String loggedInUserEmail) {
+    public List<AdminUserSummary> getUsersForAdminResponse(String loggedInUserEmail) {
         logger.info("User list requested by admin: {}", loggedInUserEmail);
-        List<UserInfo> users = userRepository.findAll();
-        return users.stream()
-                .filter(user -> !user.getEmail().equals(loggedInUserEmail))
-                .map(user -> {
-                    Map<String, Object> userMap = new HashMap<>();
-                    userMap.put("email", user.getEmail());
-                    userMap.put("blocked", user.isBlocked());
-                    return userMap;
-                })
-                .collect(Collectors.toList());
+        return userDirectory.getAdminUserList(loggedInUserEmail);
     }
 
     /**
@@ -99,35 +130,85 @@ public class AdminService {
     private ResponseEntity<String> updateUserBlockStatus(String loggedInUserEmail, String email, boolean block, UserInfo user) {
         user.setBlocked(block);
         userRepository.save(user);
+        userDirectory.invalidate();
         logger.info("Admin with email {} has {} user with email {}", loggedInUserEmail, block ? "blocked" : "unblocked", email);
+        auditLog.record(block ? AuditEventType.USER_BLOCKED : AuditEventType.USER_UNBLOCKED, loggedInUserEmail, email, null);
         return ResponseEntity.ok("User " + (block ? "blocked" : "unblocked") + " successfully");
     }
 
     /**
      * Builds a list of all messages in the database for the admin
      */
-    public List<Map<String, Object>> buildMessageList(List<Message> messages, String loggedInUserEmail) {
+    public List<AdminMessage> buildMessageList(List<Message> messages, String loggedInUserEmail) {
         logger.info("Messages list requested by admin: {}", loggedInUserEmail);
-        List<Map<String, Object>> responseMessages = new ArrayList<>();
+        List<AdminMessage> responseMessages = new ArrayList<>(messages.size());
         for (Message message : messages) {
-            Map<String, Object> messageData = new HashMap<>();
-            messageData.put("id", message.getId());
-            messageData.put("sender", message.getSender());
-            messageData.put("recipient", message.getReceiver());
-            messageData.put("message", message.getEncryptedMessage());
-            messageData.put("date", message.getDate());
-            responseMessages.add(messageData);
+            responseMessages.add(toAdminMessage(message));
         }
         return responseMessages;
     }
 
+    private AdminMessage toAdminMessage(Message message) {
+        return new AdminMessage(message.getId(), message.getSender(), message.getReceiver(), message.getEncodedCiphertext(), message.getDate());
+    }
+
     /**
-     * Deletes a message by ID and returns the result
+     * Streams every message in the database to the output as a JSON array or as NDJSON,
+     * rows are read through a database cursor and detached once written so memory stays flat
+     */
+    public void writeMessageExport(OutputStream out, boolean ndjson, String loggedInUserEmail) throws IOException {
+        logger.info("Messages export requested by admin: {}", loggedInUserEmail);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        if (ndjson) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        } else {
+            generator.writeStartArray();
+        }
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Message> messages = messageRepository.streamAllOrderById()) {
+                    int written = 0;
+                    for (Message message : (Iterable<Message>) messages::iterator) {
+                        writeMessage(generator, message);
+                        entityManager.detach(message);
+                        if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                            generator.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (ndjson) {
+            generator.writeRaw('\n');
+        } else {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+
+    /**
+     * Writes a single message through the same serializer as the admin message list
+     */
+    private void writeMessage(JsonGenerator generator, Message message) throws IOException {
+        generator.writeObject(toAdminMessage(message));
+    }
+
+    /**
+     * Deletes a message by ID with a single DELETE statement and returns the result
      */
     public ResponseEntity<String> deleteMessageById(Long messageId, String loggedInUserEmail) {
-        if (messageRepository.existsById(messageId)) {
-            messageRepository.deleteById(messageId);
+        if (messageId == null) {
+            throw new IllegalArgumentException("messageId is required");
+        }
+        Integer deleted = transaction.execute(status -> messageRepository.deleteMessage(messageId));
+        if (deleted != null && deleted > 0) {
+            inboxVersions.invalidateAll();
             logger.info("Message with id {} deleted by admin: {}", messageId, loggedInUserEmail);
+            auditLog.record(AuditEventType.MESSAGE_DELETED, loggedInUserEmail, String.valueOf(messageId), null);
             return ResponseEntity.ok("Message deleted successfully");
         } else {
             logger.info("Admin {} failed to delete message with id: {}", loggedInUserEmail, messageId);
@@ -136,26 +217,95 @@ public class AdminService {
     }
 
     /**
-     * Retrieves the log file from the server, reads the contents, and checks if the file exists
+     * Deletes every message matching the request, a list of ids with one set-based DELETE and sender, receiver and
+     * date range criteria in batches of at most bulk.max-messages with one short transaction each
      */
-    public byte[] getLogFileContent(Claims claims) throws IOException {
-        File logFile = new File("logs/application.log");
-        if (!logFile.exists()) {
-            logger.info("Admin {} failed to download logfile because it was not found", claims.getSubject());
-            return null;
-        }
-        byte[] fileContent = Files.readAllBytes(logFile.toPath());
-        logger.info("Logfile successfully downloaded by admin: {}", claims.getSubject());
-        return fileContent;
+    public ResponseEntity<String> deleteMessages(MessageDeleteRequest request, String loggedInUserEmail) {
+        boolean byIds = request.ids() != null && !request.ids().isEmpty();
+        if (byIds == request.hasCriteria()) {
+            throw new IllegalArgumentException("Specify either ids or at least one of sender, receiver, from and to");
+        }
+        if (byIds && request.ids().size() > maxBulkMessages) {
+            throw new IllegalArgumentException("A bulk delete can contain at most " + maxBulkMessages + " ids");
+        }
+        if (request.from() != null && request.to() != null && !request.from().before(request.to())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        String criteria = byIds ? request.ids().size() + " ids" : describeCriteria(request);
+        long count;
+        if (byIds) {
+            Integer deleted = transaction.execute(status -> messageRepository.deleteMessagesByIds(request.ids()));
+            count = deleted != null ? deleted : 0;
+            if (count > 0) {
+                inboxVersions.invalidateAll();
+            }
+        } else {
+            count = deleteMatchingInBatches(request, criteria);
+        }
+        logger.info("Admin {} bulk deleted {} messages matching {}", loggedInUserEmail, count, criteria);
+        auditLog.record(AuditEventType.MESSAGES_BULK_DELETED, loggedInUserEmail, criteria, String.valueOf(count));
+        return ResponseEntity.ok(count + " messages deleted");
     }
 
     /**
-     * Prepare the log file response for download
+     * Selects a batch of matching ids and deletes them by id until no match is left, the same way the retention
+     * purge does, so no single DELETE locks an unbounded number of rows
      */
-    public ResponseEntity<byte[]> prepareLogFileResponse(byte[] fileContent) {
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=application.log")
-                    .body(fileContent);
+    private long deleteMatchingInBatches(MessageDeleteRequest request, String criteria) {
+        long deleted = 0;
+        int batches = 0;
+        while (true) {
+            Integer batchDeleted = transaction.execute(status -> {
+                List<Long> ids = entityManager.createQuery(buildCriteriaIdQuery(request))
+                        .setMaxResults(maxBulkMessages)
+                        .getResultList();
+                return ids.isEmpty() ? 0 : messageRepository.deleteMessagesByIds(ids);
+            });
+            if (batchDeleted == null || batchDeleted == 0) {
+                break;
+            }
+            deleted += batchDeleted;
+            batches++;
+            inboxVersions.invalidateAll();
+            logger.info("Bulk delete of messages matching {} progress: {} messages deleted in {} batches", criteria, deleted, batches);
+        }
+        return deleted;
+    }
+
+    private CriteriaQuery<Long> buildCriteriaIdQuery(MessageDeleteRequest request) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<Message> message = query.from(Message.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (request.sender() != null) {
+            predicates.add(builder.equal(message.get("sender"), request.sender()));
+        }
+        if (request.receiver() != null) {
+            predicates.add(builder.equal(message.get("receiver"), request.receiver()));
+        }
+        if (request.from() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(message.<Date>get("date"), request.from()));
+        }
+        if (request.to() != null) {
+            predicates.add(builder.lessThan(message.<Date>get("date"), request.to()));
+        }
+        return query.select(message.<Long>get("id")).where(predicates.toArray(new Predicate[0]));
+    }
+
+    private String describeCriteria(MessageDeleteRequest request) {
+        StringJoiner criteria = new StringJoiner(" ");
+        if (request.sender() != null) {
+            criteria.add("sender=" + request.sender());
+        }
+        if (request.receiver() != null) {
+            criteria.add("receiver=" + request.receiver());
+        }
+        if (request.from() != null) {
+            criteria.add("from=" + request.from().toInstant());
+        }
+        if (request.to() != null) {
+            criteria.add("to=" + request.to().toInstant());
+        }
+        return criteria.toString();
     }
-}
\ No newline at end of file
+}
@@ -6,36 +6,55 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import se.gritacademy.audit.AuditEventType;
+import se.gritacademy.audit.AuditLog;
 import se.gritacademy.models.UserInfo;
 import se.gritacademy.repositories.UserRepository;
-import se.gritacademy.utils.HashingUtil;
 import se.gritacademy.utils.JwtUtil;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class AuthService {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
+    private static final String RETRY_AFTER_SECONDS = "1";
     private final UserRepository userRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final UserDirectory userDirectory;
+    private final AuditLog auditLog;
 
     @Autowired
-    public AuthService(UserRepository userRepository) {
+    public AuthService(UserRepository userRepository, PasswordHashingService passwordHashingService, UserDirectory userDirectory,
+                       AuditLog auditLog) {
         this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.userDirectory = userDirectory;
+        this.auditLog = auditLog;
     }
 
     /**
      * Handles various types of exceptions and returns an appropriate response
      */
     public ResponseEntity<String> handleException(Exception e, String errorMessage) {
-        if (e instanceof ExpiredJwtException) {
+        if (e instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body("Server is busy, please try again later");
+        } else if (e instanceof ExpiredJwtException) {
             logger.warn("JWT token has expired: {}", e.getMessage());
+            auditLog.record(AuditEventType.INVALID_TOKEN, null, null, "expired");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("JWT token has expired");
         } else if (e instanceof JwtException) {
             logger.warn("Invalid JWT token: {}", e.getMessage());
+            auditLog.record(AuditEventType.INVALID_TOKEN, null, null, e.getClass().getSimpleName());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid JWT token");
         } else if (e instanceof EmptyResultDataAccessException) {
             logger.warn("User not found: {}", e.getMessage());
@@ -49,6 +68,14 @@ public class AuthService {
         }
     }
 
+    /**
+     * Unwraps the failure of an asynchronous hashing task before handling it
+     */
+    public ResponseEntity<String> handleAsyncException(Throwable t, String errorMessage) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        return handleException(cause instanceof Exception exception ? exception : new RuntimeException(cause), errorMessage);
+    }
+
     /**
      * Validates email and password before creating a user
      */
@@ -103,11 +130,15 @@ public class AuthService {
     }
 
     /**
-     * Creates and saves a new user to the database
+     * Hashes the password on the hashing pool, then creates and saves a new user to the database
      */
-    public void createUser(String email, String password) throws Exception {
-        userRepository.save(new UserInfo(email, HashingUtil.hashPasswordWithPBKDF2(password), "user"));
-        logger.info("New user registered: {}", email);
+    public CompletableFuture<Void> createUser(String email, String password) {
+        return passwordHashingService.hash(password).thenAccept(hashedPassword -> {
+            userRepository.save(new UserInfo(email, hashedPassword, "user"));
+            userDirectory.invalidate();
+            logger.info("New user registered: {}", email);
+            auditLog.record(AuditEventType.REGISTRATION, email, null, null);
+        });
     }
 
     /**
@@ -120,15 +151,17 @@ public class AuthService {
     }
 
     /**
-     * Verifies the password and generates a JWT token or returns an unauthorized response
+     * Verifies the password on the hashing pool and generates a JWT token or returns an unauthorized response
      */
-    public ResponseEntity<String> verifyPassword(String inputPassword, UserInfo user) throws Exception {
-        if (HashingUtil.verifyPassword(inputPassword, user.getPassword())) {
-            return generateJwtResponse(user);
-        } else {
+    public CompletableFuture<ResponseEntity<String>> verifyPassword(String inputPassword, UserInfo user) {
+        return passwordHashingService.verify(inputPassword, user.getPassword()).thenApply(matches -> {
+            if (matches) {
+                return generateJwtResponse(user);
+            }
             logger.warn("Failed login attempt while verifying password for email: {}", user.getEmail());
+            auditLog.record(AuditEventType.LOGIN_FAILURE, user.getEmail(), null, "wrong password");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid email or password");
-        }
+        });
     }
 
     /**
@@ -137,6 +170,7 @@ public class AuthService {
     private ResponseEntity<String> generateJwtResponse(UserInfo user) {
         String token = JwtUtil.generateJwtToken(user);
         logger.info("Successful login: {}", user.getEmail());
+        auditLog.record(AuditEventType.LOGIN_SUCCESS, user.getEmail(), null, null);
         return ResponseEntity.ok(token);
     }
 
@@ -146,6 +180,7 @@ public class AuthService {
     public ResponseEntity<String> validateUserStatus(UserInfo user) {
         if (user.isBlocked()) {
             logger.warn("Blocked login attempt for email: {}", user.getEmail());
+            auditLog.record(AuditEventType.LOGIN_BLOCKED, user.getEmail(), null, null);
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Your account is blocked");
         }
         return null;
@@ -156,6 +191,7 @@ public class AuthService {
      */
     public ResponseEntity<String> handleFailedLoginAttempt(String email) {
         logger.warn("Failed login attempt for email: {}", email);
+        auditLog.record(AuditEventType.LOGIN_FAILURE, email, null, "unknown user");
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid email or password");
     }
 
@@ -0,0 +1,58 @@
+package se.gritacademy.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import se.gritacademy.repositories.MessageRepository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the ETag of every inbox that has been read, so an unchanged inbox is answered with 304 without a query.
+ * Every write to the message table must invalidate the receivers it touched.
+ */
+@Component
+public class InboxVersions {
+
+    private final MessageRepository messageRepository;
+    private final ConcurrentMap<String, String> etags = new ConcurrentHashMap<>();
+    /**
+     * Bumped by every invalidation, a value loaded while it changed may predate the write and is not kept
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public InboxVersions(MessageRepository messageRepository) {
+        this.messageRepository = messageRepository;
+    }
+
+    /**
+     * Returns the current ETag of the receiver's inbox, loading it with one aggregate query when it is not cached.
+     * The query runs outside the map so it holds no lock, and the loaded value is removed again if an invalidation
+     * happened while it ran.
+     */
+    public String getETag(String receiver) {
+        String cached = etags.get(receiver);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        String etag = messageRepository.findInboxVersion(receiver).toETag();
+        etags.putIfAbsent(receiver, etag);
+        if (generation.get() != loadedAt) {
+            etags.remove(receiver, etag);
+        }
+        return etag;
+    }
+
+    public void invalidate(String receiver) {
+        generation.incrementAndGet();
+        etags.remove(receiver);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        etags.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package se.gritacademy.service;
+
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Resolves the current and rotated log files written by logback and streams them to admins
+ */
+@Service
+public class LogFileService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogFileService.class);
+    public static final String CURRENT_LOG_FILE = "application.log";
+    private static final Path LOG_DIRECTORY = Paths.get("logs");
+    private static final Pattern LOG_FILE_NAME = Pattern.compile("application(-\\d{4}-\\d{2}-\\d{2})?\\.log");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Lists the rotated log files oldest first, followed by the current log file
+     */
+    public List<String> listLogFiles() throws IOException {
+        List<String> rotated = new ArrayList<>();
+        if (Files.isDirectory(LOG_DIRECTORY)) {
+            try (Stream<Path> files = Files.list(LOG_DIRECTORY)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(name -> LOG_FILE_NAME.matcher(name).matches() && !CURRENT_LOG_FILE.equals(name))
+                        .sorted()
+                        .forEach(rotated::add);
+            }
+        }
+        if (Files.isRegularFile(LOG_DIRECTORY.resolve(CURRENT_LOG_FILE))) {
+            rotated.add(CURRENT_LOG_FILE);
+        }
+        return rotated;
+    }
+
+    /**
+     * Resolves a log file by name, only the logback file names are accepted so the path cannot leave the log directory
+     */
+    public Path resolveLogFile(String fileName) {
+        String name = fileName == null || fileName.isBlank() ? CURRENT_LOG_FILE : fileName;
+        if (!LOG_FILE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid log file name");
+        }
+        Path logFile = LOG_DIRECTORY.resolve(name);
+        return Files.isRegularFile(logFile) ? logFile : null;
+    }
+
+    /**
+     * Retrieves the requested log file for download, returns null if it does not exist
+     */
+    public Path getLogFileForDownload(String fileName, Claims claims) {
+        Path logFile = resolveLogFile(fileName);
+        if (logFile == null) {
+            logger.info("Admin {} failed to download logfile because it was not found", claims.getSubject());
+            return null;
+        }
+        logger.info("Logfile {} successfully downloaded by admin: {}", logFile.getFileName(), claims.getSubject());
+        return logFile;
+    }
+
+    /**
+     * Whether the Accept-Encoding header allows gzip, an explicit gzip;q=0 refuses it even when * is accepted
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            boolean accepted = qualityOf(parts) > 0;
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return accepted;
+            }
+            if (coding.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static double qualityOf(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Prepares the log file response, the file is streamed from disk and Range requests are handled by Spring for a
+     * plain resource body. Whole-file downloads from clients accepting gzip are compressed on the fly instead.
+     */
+    public ResponseEntity<?> prepareLogFileResponse(Path logFile, boolean gzip) {
+        String fileName = logFile.getFileName().toString();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!gzip) {
+            return response.body(new FileSystemResource(logFile));
+        }
+        StreamingResponseBody body = out -> {
+            try (FileChannel channel = FileChannel.open(logFile);
+                 GZIPOutputStream gzipOut = new GZIPOutputStream(out, GZIP_BUFFER_SIZE)) {
+                WritableByteChannel target = Channels.newChannel(gzipOut);
+                long size = channel.size();
+                long position = 0;
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+        };
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body);
+    }
+}
@@ -0,0 +1,352 @@
+package se.gritacademy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Searches and tails the current and rotated log files without reading them onto the heap. Files are memory-mapped
+ * in windows of at most 1 GiB so files of any size are covered, and a sparse timestamp-to-offset index per file lets a time-range query start scanning close to the first match.
+ * Lines are expected in the logback pattern "yyyy-MM-dd HH:mm:ss [thread] LEVEL logger - message", lines without a
+ * timestamp (stack traces) belong to the entry above them.
+ */
+@Service
+public class LogSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogSearchService.class);
+    private static final int INDEX_INTERVAL = 64 * 1024;
+    private static final int TIMESTAMP_LENGTH = 19;
+    private final LogFileService logFileService;
+    private final ConcurrentMap<Path, SparseIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Filters for a log query, null fields match everything
+     */
+    public record LogQuery(LocalDateTime from, LocalDateTime to, String level, String loggerName, String contains, int limit) {
+    }
+
+    /**
+     * Every INDEX_INTERVAL bytes, the offset and timestamp of the first entry starting after that point
+     */
+    private record SparseIndex(Object fileKey, long indexedSize, long[] offsets, long[] timestamps) {
+    }
+
+    /**
+     * A file mapped in successive windows, one MappedByteBuffer cannot address more than 2 GiB
+     */
+    private static final class MappedLog {
+
+        private static final int WINDOW_SHIFT = 30;
+        private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+        private final MappedByteBuffer[] windows;
+        private final long size;
+
+        MappedLog(FileChannel channel, long size) throws IOException {
+            this.size = size;
+            this.windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) >>> WINDOW_SHIFT)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = (long) i << WINDOW_SHIFT;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        byte get(long position) {
+            return windows[(int) (position >>> WINDOW_SHIFT)].get((int) (position & (WINDOW_SIZE - 1)));
+        }
+
+        void get(long position, byte[] destination, int offset, int length) {
+            while (length > 0) {
+                MappedByteBuffer window = windows[(int) (position >>> WINDOW_SHIFT)];
+                int index = (int) (position & (WINDOW_SIZE - 1));
+                int count = Math.min(length, window.limit() - index);
+                window.get(index, destination, offset, count);
+                position += count;
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    @Autowired
+    public LogSearchService(LogFileService logFileService) {
+        this.logFileService = logFileService;
+    }
+
+    /**
+     * Streams every entry matching the query to the output, oldest first, and returns the number of entries written
+     */
+    public int search(LogQuery query, OutputStream out) throws IOException {
+        int written = 0;
+        for (String fileName : filesFor(query)) {
+            Path file = logFileService.resolveLogFile(fileName);
+            if (file == null) {
+                continue;
+            }
+            written += searchFile(file, query, out, query.limit() - written);
+            if (written >= query.limit()) {
+                break;
+            }
+        }
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Streams the last lines of the current log file, found by scanning backwards from the end of the file
+     */
+    public void tail(int lines, OutputStream out) throws IOException {
+        Path file = logFileService.resolveLogFile(LogFileService.CURRENT_LOG_FILE);
+        if (file == null || lines <= 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            MappedLog log = new MappedLog(channel, channel.size());
+            long position = log.size();
+            if (position > 0 && log.get(position - 1) == '\n') {
+                position--;
+            }
+            int found = 0;
+            while (position > 0 && found < lines) {
+                position--;
+                if (log.get(position) == '\n') {
+                    found++;
+                }
+            }
+            long start = found == lines ? position + 1 : position;
+            writeRange(log, start, log.size(), out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Rotated files are named by day, so only the days overlapping the query range and the current file are searched
+     */
+    private List<String> filesFor(LogQuery query) throws IOException {
+        List<String> files = new ArrayList<>();
+        for (String name : logFileService.listLogFiles()) {
+            if (LogFileService.CURRENT_LOG_FILE.equals(name)) {
+                files.add(name);
+                continue;
+            }
+            LocalDate day = LocalDate.parse(name.substring("application-".length(), name.length() - ".log".length()));
+            boolean afterFrom = query.from() == null || !day.isBefore(query.from().toLocalDate());
+            boolean beforeTo = query.to() == null || !day.isAfter(query.to().toLocalDate());
+            if (afterFrom && beforeTo) {
+                files.add(name);
+            }
+        }
+        return files;
+    }
+
+    private int searchFile(Path file, LogQuery query, OutputStream out, int remaining) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            MappedLog log = new MappedLog(channel, size);
+            SparseIndex index = indexFor(file, log);
+            long fromTime = query.from() == null ? Long.MIN_VALUE : toSortable(query.from());
+            long toTime = query.to() == null ? Long.MAX_VALUE : toSortable(query.to());
+            long position = startOffset(index, fromTime);
+            int written = 0;
+            boolean entryMatches = false;
+            while (position < log.size()) {
+                long lineEnd = lineEnd(log, position);
+                long timestamp = parseTimestamp(log, position, lineEnd);
+                if (timestamp != Long.MIN_VALUE) {
+                    if (timestamp > toTime || written >= remaining) {
+                        break;
+                    }
+                    entryMatches = timestamp >= fromTime && matches(log, position, lineEnd, query);
+                    if (entryMatches) {
+                        written++;
+                    }
+                }
+                if (entryMatches) {
+                    writeRange(log, position, Math.min(lineEnd + 1, log.size()), out);
+                }
+                position = lineEnd + 1;
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Returns the cached index for the file, extending it when the file has grown and rebuilding it when it was replaced
+     */
+    private SparseIndex indexFor(Path file, MappedLog log) throws IOException {
+        Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        long size = log.size();
+        SparseIndex existing = indexes.get(file);
+        boolean sameFile = existing != null && Objects.equals(existing.fileKey(), fileKey) && existing.indexedSize() <= size;
+        if (sameFile && existing.indexedSize() == size) {
+            return existing;
+        }
+        int capacity = (int) (size / INDEX_INTERVAL + 1);
+        int entries = sameFile ? existing.offsets().length : 0;
+        long[] offsets = sameFile ? Arrays.copyOf(existing.offsets(), Math.max(capacity, entries)) : new long[capacity];
+        long[] timestamps = sameFile ? Arrays.copyOf(existing.timestamps(), offsets.length) : new long[capacity];
+        long position = entries == 0 ? 0 : nextIndexPoint(log, offsets[entries - 1]);
+        while (position < size && entries < offsets.length) {
+            long lineEnd = lineEnd(log, position);
+            long timestamp = parseTimestamp(log, position, lineEnd);
+            if (timestamp != Long.MIN_VALUE) {
+                offsets[entries] = position;
+                timestamps[entries] = timestamp;
+                entries++;
+                position = nextIndexPoint(log, position);
+            } else {
+                position = lineEnd + 1;
+            }
+        }
+        SparseIndex index = new SparseIndex(fileKey, size, Arrays.copyOf(offsets, entries), Arrays.copyOf(timestamps, entries));
+        indexes.put(file, index);
+        logger.debug("Log index for {} covers {} bytes with {} entries", file.getFileName(), size, entries);
+        return index;
+    }
+
+    /**
+     * Returns the start of the first line beginning in the index interval after the one containing the offset
+     */
+    private long nextIndexPoint(MappedLog log, long offset) {
+        long boundary = (offset / INDEX_INTERVAL + 1) * INDEX_INTERVAL;
+        return boundary >= log.size() ? log.size() : lineStartAtOrAfter(log, boundary);
+    }
+
+    /**
+     * Binary searches the index for the last indexed entry strictly before the start of the range
+     */
+    private long startOffset(SparseIndex index, long fromTime) {
+        int low = 0;
+        int high = index.timestamps().length - 1;
+        long offset = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (index.timestamps()[mid] < fromTime) {
+                offset = index.offsets()[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Checks level, logger and substring filters against the header line of an entry
+     */
+    private boolean matches(MappedLog log, long start, long end, LogQuery query) {
+        if (query.level() == null && query.loggerName() == null && query.contains() == null) {
+            return true;
+        }
+        String line = new String(bytes(log, start, end), StandardCharsets.UTF_8);
+        int threadEnd = line.indexOf("] ", TIMESTAMP_LENGTH);
+        if (threadEnd < 0) {
+            return false;
+        }
+        String[] levelAndLogger = line.substring(threadEnd + 2).split("\\s+", 3);
+        if (levelAndLogger.length < 2) {
+            return false;
+        }
+        if (query.level() != null && !query.level().equalsIgnoreCase(levelAndLogger[0])) {
+            return false;
+        }
+        if (query.loggerName() != null && !levelAndLogger[1].contains(query.loggerName())) {
+            return false;
+        }
+        return query.contains() == null || line.contains(query.contains());
+    }
+
+    /**
+     * Parses "yyyy-MM-dd HH:mm:ss" at the start of a line into a sortable number, or Long.MIN_VALUE if the line has none
+     */
+    private long parseTimestamp(MappedLog log, long start, long end) {
+        if (end - start < TIMESTAMP_LENGTH) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            byte b = log.get(start + i);
+            boolean separator = i == 4 || i == 7 || i == 10 || i == 13 || i == 16;
+            if (separator) {
+                if (b != (i == 10 ? ' ' : i < 10 ? '-' : ':')) {
+                    return Long.MIN_VALUE;
+                }
+            } else if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            } else {
+                value = value * 10 + (b - '0');
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Same representation as parseTimestamp: the digits of yyyyMMddHHmmss as one number
+     */
+    private long toSortable(LocalDateTime time) {
+        return ((((time.getYear() * 100L + time.getMonthValue()) * 100 + time.getDayOfMonth()) * 100
+                + time.getHour()) * 100 + time.getMinute()) * 100 + time.getSecond();
+    }
+
+    private long lineEnd(MappedLog log, long start) {
+        long position = start;
+        while (position < log.size() && log.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private long lineStartAtOrAfter(MappedLog log, long position) {
+        if (position == 0) {
+            return 0;
+        }
+        if (log.get(position - 1) == '\n') {
+            return position;
+        }
+        return Math.min(lineEnd(log, position) + 1, log.size());
+    }
+
+    /**
+     * Copies a header line, capped at one window so a corrupt file without newlines cannot exhaust the heap
+     */
+    private byte[] bytes(MappedLog log, long start, long end) {
+        byte[] bytes = new byte[(int) Math.min(end - start, MappedLog.WINDOW_SIZE)];
+        log.get(start, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private void writeRange(MappedLog log, long start, long end, OutputStream out) throws IOException {
+        byte[] chunk = new byte[(int) Math.min(8192, Math.max(end - start, 1))];
+        long position = start;
+        while (position < end) {
+            int length = (int) Math.min(chunk.length, end - position);
+            log.get(position, chunk, 0, length);
+            out.write(chunk, 0, length);
+            position += length;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package se.gritacademy.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.gritacademy.models.Message;
+import se.gritacademy.repositories.MessageRepository;
+import se.gritacademy.utils.CryptoEngine;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Converts messages stored in the legacy Base64 columns to the binary envelope in the background, one chunk per
+ * transaction so the application stays online. The nonce and ciphertext are reused, so no re-encryption is needed.
+ */
+@Component
+public class MessageEnvelopeMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageEnvelopeMigration.class);
+    private static final List<String> LEGACY_COLUMNS = List.of("encrypted_message", "nonce", "auth_tag");
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final Duration pause;
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+    private record ChunkResult(int read, int migrated, long lastId) {
+    }
+
+    @Autowired
+    public MessageEnvelopeMigration(MessageRepository messageRepository, PlatformTransactionManager transactionManager,
+                                    JdbcTemplate jdbcTemplate,
+                                    @Value("${migration.envelope.enabled:true}") boolean enabled,
+                                    @Value("${migration.envelope.chunk-size:500}") int chunkSize,
+                                    @Value("${migration.envelope.pause:100ms}") Duration pause) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            Thread.ofPlatform().name("envelope-migration").daemon().start(this::migrate);
+        } else {
+            finished.complete(null);
+        }
+    }
+
+    /**
+     * Waits until the migration has stopped, whether it finished, failed or is disabled
+     */
+    public void awaitFinished() throws InterruptedException {
+        try {
+            finished.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void migrate() {
+        long start = System.nanoTime();
+        long afterId = 0;
+        int migrated = 0;
+        try {
+            while (true) {
+                long chunkAfterId = afterId;
+                ChunkResult result = transactionTemplate.execute(status -> migrateChunk(chunkAfterId));
+                if (result == null || result.read() == 0) {
+                    break;
+                }
+                migrated += result.migrated();
+                afterId = result.lastId();
+                logger.info("Envelope migration progress: {} messages migrated, last id {}", migrated, afterId);
+                Thread.sleep(pause.toMillis());
+            }
+            if (migrated > 0) {
+                logger.info("Envelope migration finished: {} messages migrated in {} ms", migrated, (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Envelope migration interrupted after {} messages", migrated);
+        } catch (RuntimeException e) {
+            logger.error("Envelope migration failed after {} messages: {}", migrated, e.getMessage());
+        } finally {
+            finished.complete(null);
+        }
+    }
+
+    /**
+     * Migrates the next chunk of legacy rows after the given id, rows that cannot be decoded are left untouched
+     */
+    private ChunkResult migrateChunk(long afterId) {
+        List<Message> messages = messageRepository.findLegacyAfter(afterId, PageRequest.of(0, chunkSize));
+        Base64.Decoder decoder = Base64.getDecoder();
+        int migrated = 0;
+        for (Message message : messages) {
+            try {
+                byte[] nonce = decoder.decode(message.getNonce());
+                byte[] ciphertext = decoder.decode(message.getEncryptedMessage());
+                if (nonce.length != CryptoEngine.NONCE_LENGTH) {
+                    throw new IllegalArgumentException("Unexpected nonce length " + nonce.length);
+                }
+                message.migrateToPayload(CryptoEngine.toEnvelope(nonce, ciphertext));
+                migrated++;
+            } catch (RuntimeException e) {
+                logger.warn("Envelope migration skipped message with id {}: {}", message.getId(), e.getMessage());
+            }
+        }
+        long lastId = messages.isEmpty() ? afterId : messages.get(messages.size() - 1).getId();
+        return new ChunkResult(messages.size(), migrated, lastId);
+    }
+
+    /**
+     * Databases created before the envelope have NOT NULL legacy columns, which schema update does not relax.
+     * Only columns that are still NOT NULL are altered, so a migrated database takes no DDL lock on startup.
+     * Runs while the context starts, before the web server accepts a message that leaves them empty.
+     */
+    @PostConstruct
+    public void relaxLegacyColumns() {
+        for (String column : LEGACY_COLUMNS) {
+            try {
+                if (isNullable(column)) {
+                    continue;
+                }
+                jdbcTemplate.execute("ALTER TABLE message ALTER COLUMN " + column + " SET NULL");
+                logger.info("Legacy column {} made nullable", column);
+            } catch (DataAccessException e) {
+                logger.warn("Could not make legacy column {} nullable: {}", column, e.getMessage());
+            }
+        }
+    }
+
+    private boolean isNullable(String column) {
+        List<String> nullable = jdbcTemplate.queryForList(
+                "SELECT IS_NULLABLE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'MESSAGE' AND COLUMN_NAME = ?",
+                String.class, column.toUpperCase());
+        return nullable.isEmpty() || "YES".equals(nullable.get(0));
+    }
+}
@@ -0,0 +1,196 @@
+package se.gritacademy.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.gritacademy.models.KeyRotationCheckpoint;
+import se.gritacademy.models.Message;
+import se.gritacademy.repositories.KeyRotationCheckpointRepository;
+import se.gritacademy.repositories.MessageRepository;
+import se.gritacademy.utils.CryptoEngine;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Re-encrypts messages sealed with an older key to the active key in the background while the application stays
+ * online. The table is walked in id order one chunk at a time: the chunk is read, re-encrypted in parallel under a
+ * messages-per-second limit, then written back in one short transaction together with the checkpoint. Starts once
+ * the envelope migration has stopped and walks the table again until no message is left on another key, and only
+ * then marks the rotation complete.
+ */
+@Component
+public class MessageKeyRotation {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageKeyRotation.class);
+    private static final String UPDATE_PAYLOAD = "UPDATE message SET payload = ?, key_id = ? WHERE id = ?";
+    private final MessageRepository messageRepository;
+    private final KeyRotationCheckpointRepository checkpointRepository;
+    private final CryptoEngine cryptoEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageEnvelopeMigration envelopeMigration;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int rate;
+    private final int parallelism;
+
+    @Autowired
+    public MessageKeyRotation(MessageRepository messageRepository, KeyRotationCheckpointRepository checkpointRepository,
+                              CryptoEngine cryptoEngine, PlatformTransactionManager transactionManager,
+                              JdbcTemplate jdbcTemplate, MessageEnvelopeMigration envelopeMigration,
+                              @Value("${crypto.rotation.enabled:true}") boolean enabled,
+                              @Value("${crypto.rotation.chunk-size:200}") int chunkSize,
+                              @Value("${crypto.rotation.rate:500}") int rate,
+                              @Value("${crypto.rotation.parallelism:2}") int parallelism) {
+        this.messageRepository = messageRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.cryptoEngine = cryptoEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = jdbcTemplate;
+        this.envelopeMigration = envelopeMigration;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.rate = rate;
+        this.parallelism = parallelism;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            Thread.ofPlatform().name("key-rotation").daemon().start(this::rotate);
+        }
+    }
+
+    /**
+     * Resumes an unfinished rotation to the active key from its checkpoint, a completed one is checked again from
+     * the start since rows can have been sealed with the old key since then. Passes repeat from the start until no
+     * message is left on another key, or until a full pass re-encrypts nothing because only failing rows remain.
+     */
+    private void rotate() {
+        String keyId = cryptoEngine.getActiveKeyId();
+        KeyRotationCheckpoint checkpoint = checkpointRepository.findById(keyId)
+                .orElseGet(() -> new KeyRotationCheckpoint(keyId));
+        if (checkpoint.isCompleted()) {
+            checkpoint.restart();
+        }
+        Bucket throttle = Bucket.builder()
+                .addLimit(Bandwidth.classic(rate, Refill.greedy(rate, Duration.ofSeconds(1))))
+                .build();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "key-rotation-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        long rotated = 0;
+        try {
+            envelopeMigration.awaitFinished();
+            while (true) {
+                boolean fromStart = checkpoint.getLastId() == 0;
+                long passRotated = rotatePass(keyId, checkpoint, throttle, workers);
+                rotated += passRotated;
+                long remaining = messageRepository.countNotSealedWith(keyId, CryptoEngine.DEFAULT_KEY_ID);
+                if (remaining == 0) {
+                    checkpoint.complete();
+                    transactionTemplate.executeWithoutResult(status -> checkpointRepository.save(checkpoint));
+                    logger.info("Key rotation to {} complete: {} messages re-encrypted, failed=0, {} ms, no message uses another key",
+                            keyId, rotated, (System.nanoTime() - start) / 1_000_000);
+                    break;
+                }
+                if (fromStart && passRotated == 0) {
+                    logger.warn("Key rotation to {} incomplete: {} messages still use another key, failed={}, legacy={}, keep the old keys",
+                            keyId, remaining, checkpoint.getFailed(), messageRepository.countLegacy());
+                    break;
+                }
+                checkpoint.restart();
+                transactionTemplate.executeWithoutResult(status -> checkpointRepository.save(checkpoint));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Key rotation to {} interrupted after {} messages, resumes after id {}", keyId, rotated, checkpoint.getLastId());
+        } catch (ExecutionException | RuntimeException e) {
+            logger.error("Key rotation to {} failed after {} messages, resumes after id {}: {}",
+                    keyId, rotated, checkpoint.getLastId(), e.getMessage());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Walks the table from the checkpoint to the end and returns how many messages were re-encrypted
+     */
+    private long rotatePass(String keyId, KeyRotationCheckpoint checkpoint, Bucket throttle, ExecutorService workers)
+            throws InterruptedException, ExecutionException {
+        long rotated = 0;
+        while (true) {
+            List<Message> messages = messageRepository.findNotSealedWithAfter(keyId, CryptoEngine.DEFAULT_KEY_ID,
+                    checkpoint.getLastId(), PageRequest.of(0, chunkSize));
+            if (messages.isEmpty()) {
+                return rotated;
+            }
+            List<Object[]> updates = reencryptChunk(messages, throttle, workers);
+            checkpoint.advance(messages.get(messages.size() - 1).getId(), updates.size(), messages.size() - updates.size());
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(UPDATE_PAYLOAD, updates);
+                checkpointRepository.save(checkpoint);
+            });
+            rotated += updates.size();
+            logger.info("Key rotation to {} progress: {} messages re-encrypted, {} failed, last id {}",
+                    keyId, checkpoint.getRotated(), checkpoint.getFailed(), checkpoint.getLastId());
+        }
+    }
+
+    /**
+     * Re-encrypts the chunk on the worker threads and returns the update parameters in id order,
+     * messages that cannot be opened with their recorded key are skipped and keep it
+     */
+    private List<Object[]> reencryptChunk(List<Message> messages, Bucket throttle, ExecutorService workers)
+            throws InterruptedException, ExecutionException {
+        List<Future<Object[]>> results = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            results.add(workers.submit(() -> reencrypt(message, throttle)));
+        }
+        List<Object[]> updates = new ArrayList<>(messages.size());
+        for (Future<Object[]> result : results) {
+            Object[] update = result.get();
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        return updates;
+    }
+
+    private Object[] reencrypt(Message message, Bucket throttle) throws InterruptedException {
+        throttle.asBlocking().consume(1);
+        try {
+            byte[] plaintext = cryptoEngine.open(message.getKeyId(), message.getPayload());
+            byte[] payload = cryptoEngine.seal(plaintext);
+            Arrays.fill(plaintext, (byte) 0);
+            return new Object[]{payload, cryptoEngine.getActiveKeyId(), message.getId()};
+        } catch (GeneralSecurityException | RuntimeException e) {
+            logger.warn("Key rotation skipped message with id {}: {}", message.getId(), e.getMessage());
+            return null;
+        }
+    }
+}
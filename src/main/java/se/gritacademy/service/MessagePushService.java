@@ -0,0 +1,205 @@
+package se.gritacademy.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import se.gritacademy.dto.InboxMessage;
+import se.gritacademy.models.Message;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fans new messages out to the receiver's open Server-Sent Events streams. Every stream has a small bounded queue
+ * that a pooled writer thread drains only while it holds events, so idle connections cost no threads and a client
+ * that stops reading blocks only its own writer. A stream whose queue overflows is closed, the page reconnects
+ * and reloads its inbox.
+ */
+@Service
+public class MessagePushService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessagePushService.class);
+    private final ConcurrentMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService writers;
+    private final long emitterTimeoutMillis;
+    private final int maxStreamsPerUser;
+    private final int queueCapacity;
+
+    /**
+     * An open stream with the events waiting to be written to it, at most one writer drains the queue at a time.
+     * SseEmitter sends and completes under the emitter's monitor, so the stream is also closed by its writer and
+     * never by a thread that could then wait behind a blocked send.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> pending;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closing;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * Queues an event without blocking, a stream that is too far behind is closed instead
+         */
+        void enqueue(Supplier<SseEmitter.SseEventBuilder> event) {
+            if (closing) {
+                return;
+            }
+            if (!pending.offer(event)) {
+                logger.warn("Message stream closed, the client fell {} events behind", queueCapacity);
+                close();
+                return;
+            }
+            startDrain();
+        }
+
+        /**
+         * Drops the queued events and completes the stream once the current send, if any, has returned
+         */
+        void close() {
+            closing = true;
+            pending.clear();
+            startDrain();
+        }
+
+        private void startDrain() {
+            if (draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                while (!closing && (event = pending.poll()) != null) {
+                    send(emitter, event);
+                }
+                if (closing) {
+                    emitter.complete();
+                    return;
+                }
+                draining.set(false);
+            } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+        }
+    }
+
+    @Autowired
+    public MessagePushService(@Value("${push.heartbeat-interval:25s}") Duration heartbeatInterval,
+                              @Value("${push.emitter-timeout:30m}") Duration emitterTimeout,
+                              @Value("${push.max-streams-per-user:5}") int maxStreamsPerUser,
+                              @Value("${push.queue-capacity:32}") int queueCapacity,
+                              @Value("${push.threads:1}") int threads,
+                              MeterRegistry meterRegistry) {
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+        this.maxStreamsPerUser = maxStreamsPerUser;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-push-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger writerNumber = new AtomicInteger();
+        this.writers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sse-write-" + writerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeatMillis = heartbeatInterval.toMillis();
+        scheduler.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        Gauge.builder("push.connections", connectionCount, AtomicInteger::get)
+                .description("Open message push streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a new stream for the user, the oldest stream is closed when the user already has too many open
+     */
+    public SseEmitter subscribe(String email) throws IOException {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        emitter.send(SseEmitter.event().comment("connected"));
+        Subscriber subscriber = new Subscriber(emitter);
+        Set<Subscriber> streams = subscribers.compute(email, (key, existing) -> {
+            Set<Subscriber> updated = existing != null ? existing : new CopyOnWriteArraySet<>();
+            updated.add(subscriber);
+            return updated;
+        });
+        connectionCount.incrementAndGet();
+        emitter.onCompletion(() -> unsubscribe(email, subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> emitter.complete());
+        if (streams.size() > maxStreamsPerUser) {
+            streams.iterator().next().close();
+        }
+        logger.info("Message stream opened by: {}", email);
+        return emitter;
+    }
+
+    /**
+     * Pushes a newly saved message to the receiver's streams, does nothing when the receiver is not connected
+     */
+    public void publish(Message message, String plaintext) {
+        Set<Subscriber> streams = subscribers.get(message.getReceiver());
+        if (streams == null || streams.isEmpty()) {
+            return;
+        }
+        InboxMessage msgData = new InboxMessage(message.getSender(), message.getReceiver(), message.getDate(), plaintext);
+        String eventId = String.valueOf(message.getId());
+        for (Subscriber subscriber : streams) {
+            subscriber.enqueue(() -> SseEmitter.event().id(eventId).name("message").data(msgData, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (Set<Subscriber> streams : subscribers.values()) {
+            for (Subscriber subscriber : streams) {
+                subscriber.enqueue(() -> SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    /**
+     * Sends a freshly built event, builders append to their buffer when built so they cannot be shared between emitters
+     */
+    private void send(SseEmitter emitter, Supplier<SseEmitter.SseEventBuilder> event) {
+        try {
+            emitter.send(event.get());
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void unsubscribe(String email, Subscriber subscriber) {
+        subscribers.computeIfPresent(email, (key, streams) -> {
+            if (streams.remove(subscriber)) {
+                connectionCount.decrementAndGet();
+            }
+            return streams.isEmpty() ? null : streams;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        writers.shutdownNow();
+        subscribers.values().forEach(streams -> streams.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+}
@@ -0,0 +1,99 @@
+package se.gritacademy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.gritacademy.audit.AuditEventType;
+import se.gritacademy.audit.AuditLog;
+import se.gritacademy.repositories.MessageRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Deletes messages older than the retention period on a schedule, in bounded batches with one transaction each
+ * so no single DELETE holds its locks for long and readers and writers keep going between batches
+ */
+@Component
+public class MessageRetention {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageRetention.class);
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final InboxVersions inboxVersions;
+    private final AuditLog auditLog;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final Duration pause;
+
+    @Autowired
+    public MessageRetention(MessageRepository messageRepository, PlatformTransactionManager transactionManager,
+                            InboxVersions inboxVersions, AuditLog auditLog,
+                            @Value("${retention.enabled:false}") boolean enabled,
+                            @Value("${retention.max-age:365d}") Duration maxAge,
+                            @Value("${retention.batch-size:500}") int batchSize,
+                            @Value("${retention.pause:100ms}") Duration pause) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inboxVersions = inboxVersions;
+        this.auditLog = auditLog;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    @Scheduled(initialDelayString = "${retention.initial-delay:60000}", fixedDelayString = "${retention.interval:3600000}")
+    public void purgeExpiredMessages() {
+        if (enabled) {
+            purgeOlderThan(Date.from(Instant.now().minus(maxAge)));
+        }
+    }
+
+    /**
+     * Deletes all messages dated before the cutoff batch by batch and returns how many were deleted
+     */
+    public long purgeOlderThan(Date cutoff) {
+        long start = System.nanoTime();
+        long deleted = 0;
+        int batches = 0;
+        try {
+            while (true) {
+                Integer batchDeleted = transactionTemplate.execute(status -> {
+                    List<Long> ids = messageRepository.findIdsOlderThan(cutoff, PageRequest.of(0, batchSize));
+                    return ids.isEmpty() ? 0 : messageRepository.deleteMessagesByIds(ids);
+                });
+                if (batchDeleted == null || batchDeleted == 0) {
+                    break;
+                }
+                deleted += batchDeleted;
+                batches++;
+                inboxVersions.invalidateAll();
+                logger.info("Retention purge progress: {} messages deleted in {} batches", deleted, batches);
+                Thread.sleep(pause.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Retention purge interrupted after {} messages", deleted);
+        } catch (RuntimeException e) {
+            logger.error("Retention purge failed after {} messages: {}", deleted, e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.info("Retention purge finished: {} messages older than {} deleted in {} batches, {} ms",
+                    deleted, cutoff.toInstant(), batches, (System.nanoTime() - start) / 1_000_000);
+            auditLog.record(AuditEventType.MESSAGES_PURGED, null, "before " + cutoff.toInstant(), String.valueOf(deleted));
+        } else {
+            logger.info("Retention purge found no messages older than {}", cutoff.toInstant());
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,95 @@
+package se.gritacademy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se.gritacademy.utils.HashingUtil;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs PBKDF2 hashing on its own bounded pool so a login burst cannot occupy every request thread,
+ * tasks are rejected with a RejectedExecutionException as soon as the queue is full
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public PasswordHashingService(@Value("${hashing.threads:0}") int threads,
+                                  @Value("${hashing.queue-capacity:64}") int queueCapacity,
+                                  MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pbkdf2-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("hashing.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("PBKDF2 tasks waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("PBKDF2 tasks currently running")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("hashing.queue.wait")
+                .description("Time a PBKDF2 task spent queued before it started")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("hashing.rejected")
+                .description("PBKDF2 tasks rejected because the queue was full")
+                .register(meterRegistry);
+        logger.info("Password hashing pool started with {} threads and a queue of {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Hashes a new password on the hashing pool
+     */
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> HashingUtil.hashPasswordWithPBKDF2(password));
+    }
+
+    /**
+     * Verifies a password against the stored hash on the hashing pool
+     */
+    public CompletableFuture<Boolean> verify(String inputPassword, String storedHash) {
+        return submit(() -> HashingUtil.verifyPassword(inputPassword, storedHash));
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWaitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            logger.warn("Password hashing queue is full, request rejected");
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,126 @@
+package se.gritacademy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import se.gritacademy.dto.AdminUserSummary;
+import se.gritacademy.dto.UserSummary;
+import se.gritacademy.models.UserInfo;
+import se.gritacademy.repositories.UserRepository;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory snapshot of all users, rebuilt lazily after AuthService or AdminService invalidates it.
+ * List responses are filtered from prebuilt immutable views and receiver checks are hash lookups.
+ */
+@Component
+public class UserDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectory.class);
+    private final UserRepository userRepository;
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    private record Entry(String email, UserSummary userView, AdminUserSummary adminView) {
+    }
+
+    private record Snapshot(long generation, Set<String> emails, List<Entry> entries) {
+    }
+
+    @Autowired
+    public UserDirectory(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Checks if a user with the email exists
+     */
+    public boolean contains(String email) {
+        return currentSnapshot().emails().contains(email);
+    }
+
+    /**
+     * Returns email and role of every user except the given one
+     */
+    public List<UserSummary> getUserList(String excludedEmail) {
+        List<Entry> entries = currentSnapshot().entries();
+        List<UserSummary> users = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (!entry.email().equals(excludedEmail)) {
+                users.add(entry.userView());
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Returns email and blocked status of every user except the given one
+     */
+    public List<AdminUserSummary> getAdminUserList(String excludedEmail) {
+        List<Entry> entries = currentSnapshot().entries();
+        List<AdminUserSummary> users = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (!entry.email().equals(excludedEmail)) {
+                users.add(entry.adminView());
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Discards the snapshot, the next read rebuilds it from the database
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.generation() == generation.get()) {
+            return current;
+        }
+        return rebuild();
+    }
+
+    /**
+     * Loads all users into a new snapshot, it is only published if no invalidation happened while loading.
+     * A ReentrantLock rather than synchronized, a virtual thread blocked on JDBC inside a monitor would pin its carrier.
+     */
+    private Snapshot rebuild() {
+        rebuildLock.lock();
+        try {
+            return rebuildLocked();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Snapshot rebuildLocked() {
+        Snapshot current = snapshot;
+        long expectedGeneration = generation.get();
+        if (current != null && current.generation() == expectedGeneration) {
+            return current;
+        }
+        List<UserInfo> users = userRepository.findAll();
+        Set<String> emails = new HashSet<>(users.size() * 2);
+        List<Entry> entries = new ArrayList<>(users.size());
+        for (UserInfo user : users) {
+            emails.add(user.getEmail());
+            entries.add(new Entry(user.getEmail(),
+                    new UserSummary(user.getEmail(), user.getRole()),
+                    new AdminUserSummary(user.getEmail(), user.isBlocked())));
+        }
+        Snapshot rebuilt = new Snapshot(expectedGeneration, Collections.unmodifiableSet(emails), List.copyOf(entries));
+        if (generation.get() == expectedGeneration) {
+            snapshot = rebuilt;
+        }
+        logger.info("User directory rebuilt with {} users", users.size());
+        return rebuilt;
+    }
+}
@@ -6,32 +6,62 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import se.gritacademy.audit.AuditEventType;
+import se.gritacademy.audit.AuditLog;
+import se.gritacademy.config.MessageCryptoPool;
+import se.gritacademy.dto.InboxMessage;
+import se.gritacademy.dto.MessagePage;
+import se.gritacademy.dto.OutgoingMessage;
+import se.gritacademy.dto.UserSummary;
 import se.gritacademy.models.Message;
-import se.gritacademy.models.UserInfo;
 import se.gritacademy.repositories.MessageRepository;
 import se.gritacademy.repositories.UserRepository;
-import se.gritacademy.utils.CryptoUtil;
+import se.gritacademy.utils.CryptoEngine;
+import se.gritacademy.utils.MessageCursor;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    private static final int MAX_PAGE_SIZE = 200;
     private final UserRepository userRepository;
     private final MessageRepository messageRepository;
-    @Value("${crypto.key}")
-    private String cryptoKey;
+    private final CryptoEngine cryptoEngine;
+    private final UserDirectory userDirectory;
+    private final MessageCryptoPool messageCryptoPool;
+    private final AuditLog auditLog;
+    private final MessagePushService messagePushService;
+    private final InboxVersions inboxVersions;
+    private final int parallelThreshold;
+    private final int maxBulkMessages;
 
     @Autowired
-    public UserService(UserRepository userRepository, MessageRepository messageRepository) {
+    public UserService(UserRepository userRepository, MessageRepository messageRepository, CryptoEngine cryptoEngine, UserDirectory userDirectory,
+                       MessageCryptoPool messageCryptoPool, AuditLog auditLog,
+                       MessagePushService messagePushService, InboxVersions inboxVersions,
+                       @Value("${inbox.parallel-threshold:200}") int parallelThreshold,
+                       @Value("${bulk.max-messages:1000}") int maxBulkMessages) {
         this.userRepository = userRepository;
         this.messageRepository = messageRepository;
+        this.cryptoEngine = cryptoEngine;
+        this.userDirectory = userDirectory;
+        this.messageCryptoPool = messageCryptoPool;
+        this.auditLog = auditLog;
+        this.messagePushService = messagePushService;
+        this.inboxVersions = inboxVersions;
+        this.parallelThreshold = parallelThreshold;
+        this.maxBulkMessages = maxBulkMessages;
     }
 
     /**
@@ -40,10 +70,15 @@ public class UserService {
     public ResponseEntity<String> handleException(Exception e, String errorMessage) {
         if (e instanceof ExpiredJwtException) {
             logger.warn("JWT token has expired: {}", e.getMessage());
+            auditLog.record(AuditEventType.INVALID_TOKEN, null, null, "expired");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("JWT token has expired");
         } else if (e instanceof JwtException) {
             logger.warn("Invalid JWT token: {}", e.getMessage());
+            auditLog.record(AuditEventType.INVALID_TOKEN, null, null, e.getClass().getSimpleName());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid JWT token");
+        } else if (e instanceof IllegalArgumentException) {
+            logger.warn("Invalid request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } else if (e instanceof IOException) {
             logger.error("I/O error occurred: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("I/O error occurred: " + errorMessage);
@@ -56,19 +91,9 @@ public class UserService {
     /**
      * Retrieves a list of user emails excluding the logged-in user
      */
-    public List<Map<String, String>> getUserList(String loggedInUserEmail) {
+    public List<UserSummary> getUserList(String loggedInUserEmail) {
         logger.info("User list requested by: {}", loggedInUserEmail);
-        List<UserInfo> users = userRepository.findAll();
-
-        return users.stream()
-                .filter(user -> !user.getEmail().equals(loggedInUserEmail))
-                .map(user -> {
-                    Map<String, String> userMap = new HashMap<>();
-                    userMap.put("email", user.getEmail());
-                    userMap.put("role", user.getRole());
-                    return userMap;
-                })
-                .collect(Collectors.toList());
+        return userDirectory.getUserList(loggedInUserEmail);
     }
 
     /**
@@ -85,8 +110,7 @@ public class UserService {
      * Validates if the receiver exists in the database by checking their email
      */
     public ResponseEntity<String> validateReceiver(String receiver) {
-        Optional<UserInfo> receivingUser = userRepository.findByEmail(receiver);
-        if (receivingUser.isEmpty()) {
+        if (!userDirectory.contains(receiver)) {
             logger.warn("Failed to send message - Receiver does not exist: {}", receiver);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Receiver does not exist");
         }
@@ -94,64 +118,176 @@ public class UserService {
     }
 
     /**
-     * Encrypts the message and saves it to the database
+     * Encrypts the message, saves it to the database and pushes it to the receiver's open streams
      */
     public ResponseEntity<String> encryptAndSaveMessage(String senderEmail, String receiver, String message) throws Exception {
-        String hashedSecretKey = CryptoUtil.hashKey(cryptoKey);
-        String encryptedMessageWithComponents = CryptoUtil.encryptMessage(message, hashedSecretKey);
-        String[] encryptedData = encryptedMessageWithComponents.split(":");
-        if (encryptedData.length != 3) {
-            logger.error("Encryption failed");
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Encryption failed");
-        }
-        saveMessage(senderEmail, receiver, encryptedData);
+        Message saved = messageRepository.save(encryptMessage(senderEmail, receiver, message, new Date()));
+        inboxVersions.invalidate(receiver);
+        messagePushService.publish(saved, message);
+        logger.info("User {} sent a message to {}", senderEmail, receiver);
         logger.info("Message sent successfully by: {}", senderEmail);
         return ResponseEntity.status(HttpStatus.CREATED).body("Message sent successfully");
     }
 
     /**
-     * Saves a message to the database, using the provided encrypted data components
+     * Validates a bulk send request, returns an error response or null if every message is valid
      */
-    private void saveMessage(String senderEmail, String receiver, String[] encryptedData) {
-        String encryptedMessage = encryptedData[0];
-        String nonce = encryptedData[1];
-        String authTag = encryptedData[2];
-        Message newMessage = new Message(
-                senderEmail,
-                receiver,
-                encryptedMessage,
-                nonce,
-                authTag,
-                new Date()
-        );
-        messageRepository.save(newMessage);
-        logger.info("User {} sent a message to {}", senderEmail, receiver);
+    public ResponseEntity<String> validateBulkMessages(List<OutgoingMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return ResponseEntity.badRequest().body("No messages to send");
+        }
+        if (messages.size() > maxBulkMessages) {
+            return ResponseEntity.badRequest().body("A bulk request can contain at most " + maxBulkMessages + " messages");
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            OutgoingMessage message = messages.get(i);
+            if (validateMessage(message.message()) != null) {
+                return ResponseEntity.badRequest().body("Message " + i + " cannot be empty");
+            }
+            if (message.receiver() == null || !userDirectory.contains(message.receiver())) {
+                logger.warn("Failed to send bulk messages - Receiver does not exist: {}", message.receiver());
+                return ResponseEntity.badRequest().body("Receiver of message " + i + " does not exist");
+            }
+        }
+        return null;
     }
 
     /**
-     * Decrypts all messages in the list and returns a list of message data maps
+     * Encrypts the messages in parallel on the message crypto pool and saves them in one transaction,
+     * Hibernate sends the inserts as JDBC batches since ids come from a pooled sequence
      */
-    public List<Map<String, Object>> decryptAllMessages(List<Message> messages, String userEmail) throws Exception {
+    public ResponseEntity<String> encryptAndSaveMessages(String senderEmail, List<OutgoingMessage> messages) throws Exception {
+        Date date = new Date();
+        List<Message> encryptedMessages = messageCryptoPool.submit(() -> messages.parallelStream()
+                .map(message -> {
+                    try {
+                        return encryptMessage(senderEmail, message.receiver(), message.message(), date);
+                    } catch (GeneralSecurityException e) {
+                        throw new IllegalStateException("Encryption failed", e);
+                    }
+                })
+                .toList()).get();
+        messageRepository.saveAll(encryptedMessages);
+        messages.stream().map(OutgoingMessage::receiver).distinct().forEach(inboxVersions::invalidate);
+        for (int i = 0; i < encryptedMessages.size(); i++) {
+            messagePushService.publish(encryptedMessages.get(i), messages.get(i).message());
+        }
+        logger.info("User {} sent {} messages in bulk", senderEmail, encryptedMessages.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(encryptedMessages.size() + " messages sent successfully");
+    }
+
+    /**
+     * Encrypts a message with the active key into a new entity stored as a binary envelope
+     */
+    private Message encryptMessage(String senderEmail, String receiver, String message, Date date) throws GeneralSecurityException {
+        return new Message(senderEmail, receiver, cryptoEngine.getActiveKeyId(), cryptoEngine.sealString(message), date);
+    }
+
+    /**
+     * Decrypts all messages in the list and returns them in the same order,
+     * large inboxes are decrypted in parallel on the message crypto pool
+     */
+    public List<InboxMessage> decryptAllMessages(List<Message> messages, String userEmail) throws Exception {
         logger.info("Message list requested by: {}", userEmail);
-        String hashedSecretKey = CryptoUtil.hashKey(cryptoKey);
-        List<Map<String, Object>> responseMessages = new ArrayList<>();
-        for (Message message : messages) {
-            String decryptedMessage = decryptSingleMessage(message, hashedSecretKey);
-            Map<String, Object> msgData = new HashMap<>();
-            msgData.put("sender", message.getSender());
-            msgData.put("receiver", message.getReceiver());
-            msgData.put("message", decryptedMessage);
-            msgData.put("date", message.getDate());
-            responseMessages.add(msgData);
+        if (messages.size() < parallelThreshold) {
+            List<InboxMessage> responseMessages = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                responseMessages.add(buildMessageData(message));
+            }
+            return responseMessages;
+        }
+        return messageCryptoPool.submit(() -> messages.parallelStream()
+                .map(this::buildMessageData)
+                .toList()).get();
+    }
+
+    /**
+     * Returns the ETag of the user's inbox, answered from memory while the inbox is unchanged
+     */
+    public String getInboxETag(String userEmail) {
+        return inboxVersions.getETag(userEmail);
+    }
+
+    /**
+     * Checks an If-None-Match header against the inbox ETag, weak comparison as GET requires
+     */
+    public boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fetches the messages received after the given ISO-8601 instant, newest first
+     */
+    public List<InboxMessage> getMessagesSince(String userEmail, String since) throws Exception {
+        Date after;
+        try {
+            after = Date.from(Instant.parse(since));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid since parameter, expected an ISO-8601 instant");
         }
-        return responseMessages;
+        return decryptAllMessages(messageRepository.findByReceiverAndDateAfterOrderByDateDesc(userEmail, after), userEmail);
     }
 
     /**
-     * Decrypts the content of a single message using the provided secret key
+     * Fetches one keyset page of the inbox, newest first, and decrypts only the messages on that page
      */
-    private String decryptSingleMessage(Message message, String hashedSecretKey) throws Exception {
-        String encryptedData = message.getEncryptedMessage() + ":" + message.getNonce() + ":" + message.getAuthTag();
-        return CryptoUtil.decryptMessage(encryptedData, hashedSecretKey);
+    public MessagePage getMessagePage(String userEmail, int limit, String before) throws Exception {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<Message> messages;
+        if (before == null || before.isBlank()) {
+            messages = messageRepository.findByReceiverOrderByDateDescIdDesc(userEmail, pageRequest);
+        } else {
+            MessageCursor cursor = MessageCursor.decode(before);
+            messages = messageRepository.findPageBefore(userEmail, cursor.date(), cursor.id(), pageRequest);
+        }
+        boolean hasMore = messages.size() > limit;
+        List<Message> page = hasMore ? messages.subList(0, limit) : messages;
+        String nextCursor = hasMore ? MessageCursor.of(page.get(page.size() - 1)).encode() : null;
+        return new MessagePage(decryptAllMessages(page, userEmail), nextCursor);
+    }
+
+    /**
+     * Builds the response data for a single message, a message that cannot be decrypted is marked instead of failing the whole list
+     */
+    private InboxMessage buildMessageData(Message message) {
+        try {
+            return new InboxMessage(message.getSender(), message.getReceiver(), message.getDate(), decryptSingleMessage(message));
+        } catch (Exception e) {
+            logger.error("Failed to decrypt message with id {}: {}", message.getId(), e.getMessage());
+            auditLog.record(AuditEventType.DECRYPTION_FAILURE, message.getReceiver(), String.valueOf(message.getId()), e.getMessage());
+            return new InboxMessage(message.getSender(), message.getReceiver(), message.getDate(), null, "Message could not be decrypted");
+        }
+    }
+
+    /**
+     * Decrypts the content of a single message with the key it was stored with, rows not yet migrated to the binary
+     * envelope are read from the legacy Base64 columns after verifying that the stored auth tag matches the ciphertext
+     */
+    private String decryptSingleMessage(Message message) throws Exception {
+        if (message.getPayload() != null) {
+            return cryptoEngine.openToString(message.getKeyId(), message.getPayload());
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] encryptedBytes = decoder.decode(message.getEncryptedMessage());
+        byte[] nonce = decoder.decode(message.getNonce());
+        byte[] authTag = decoder.decode(message.getAuthTag());
+        if (encryptedBytes.length < CryptoEngine.TAG_LENGTH || !MessageDigest.isEqual(authTag,
+                Arrays.copyOfRange(encryptedBytes, encryptedBytes.length - CryptoEngine.TAG_LENGTH, encryptedBytes.length))) {
+            throw new SecurityException("Authentication tag mismatch or data tampering detected");
+        }
+        return cryptoEngine.decryptToString(message.getKeyId(), encryptedBytes, nonce);
     }
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package se.gritacademy.utils;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reusable AES-GCM engine over a keyring, keys are derived once and Cipher instances are reused through an InstancePool.
+ * New data is encrypted with the active key, stored data is decrypted with the key id recorded next to it.
+ */
+@Component
+public class CryptoEngine {
+
+    public static final int NONCE_LENGTH = 12;
+    public static final int TAG_LENGTH = 16;
+    public static final byte ENVELOPE_VERSION = 1;
+    public static final String DEFAULT_KEY_ID = "default";
+    public static final int MAX_KEY_ID_LENGTH = 32;
+    private static final int ENVELOPE_HEADER_LENGTH = 1 + NONCE_LENGTH;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final Timer sealTimer = cryptoTimer("encrypt", "envelope");
+    private static final Timer openTimer = cryptoTimer("decrypt", "envelope");
+
+    private final Map<String, SecretKey> keys;
+    private final String activeKeyId;
+    private final SecretKey activeKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final InstancePool<Cipher> ciphers = new InstancePool<>(CryptoEngine::newCipher);
+
+    /**
+     * Single-key engine, the key gets the default id
+     */
+    public CryptoEngine(String cryptoKey) throws Exception {
+        this(Map.of(DEFAULT_KEY_ID, cryptoKey), DEFAULT_KEY_ID);
+    }
+
+    @Autowired
+    public CryptoEngine(CryptoKeyProperties properties) throws Exception {
+        this(properties.getKeyring(), properties.getActiveKeyId());
+    }
+
+    public CryptoEngine(Map<String, String> keyring, String activeKeyId) throws Exception {
+        Map<String, SecretKey> derivedKeys = new HashMap<>();
+        for (Map.Entry<String, String> entry : keyring.entrySet()) {
+            if (entry.getKey().isEmpty() || entry.getKey().length() > MAX_KEY_ID_LENGTH) {
+                throw new IllegalArgumentException("Crypto key id must be 1 to " + MAX_KEY_ID_LENGTH + " characters: " + entry.getKey());
+            }
+            derivedKeys.put(entry.getKey(), deriveKey(entry.getValue()));
+        }
+        if (!derivedKeys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Active crypto key " + activeKeyId + " is not in the keyring");
+        }
+        this.keys = Map.copyOf(derivedKeys);
+        this.activeKeyId = activeKeyId;
+        this.activeKey = derivedKeys.get(activeKeyId);
+    }
+
+    /**
+     * Derives the AES key the same way as CryptoUtil.hashKey so existing messages can still be decrypted
+     */
+    public static SecretKey deriveKey(String cryptoKey) throws Exception {
+        return new SecretKeySpec(CryptoUtil.hashKey(cryptoKey).getBytes(StandardCharsets.UTF_8), "AES");
+    }
+
+    /**
+     * Id of the key that seal and encrypt use
+     */
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    /**
+     * Whether data stored with the given key id (null for rows written before key ids were recorded) uses the active key
+     */
+    public boolean isActiveKey(String keyId) {
+        return activeKeyId.equals(keyId != null ? keyId : DEFAULT_KEY_ID);
+    }
+
+    /**
+     * Generates a fresh random nonce
+     */
+    public byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        secureRandom.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * Encrypts the plaintext with the given nonce and returns the ciphertext with the auth tag appended
+     */
+    public byte[] encrypt(byte[] plaintext, byte[] nonce) throws GeneralSecurityException {
+        Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, activeKey, nonce);
+        try {
+            return cipher.doFinal(plaintext);
+        } finally {
+            ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Encrypts the remaining bytes of the plaintext buffer into the output buffer and returns the number of bytes written
+     */
+    public int encrypt(ByteBuffer plaintext, byte[] nonce, ByteBuffer output) throws GeneralSecurityException {
+        Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, activeKey, nonce);
+        try {
+            return cipher.doFinal(plaintext, output);
+        } finally {
+            ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Decrypts ciphertext (with the auth tag appended) using the active key and the nonce it was encrypted with
+     */
+    public byte[] decrypt(byte[] ciphertextWithTag, byte[] nonce) throws GeneralSecurityException {
+        return decrypt(activeKeyId, ciphertextWithTag, nonce);
+    }
+
+    /**
+     * Decrypts ciphertext (with the auth tag appended) using the given key and the nonce it was encrypted with
+     */
+    public byte[] decrypt(String keyId, byte[] ciphertextWithTag, byte[] nonce) throws GeneralSecurityException {
+        Cipher cipher = initCipher(Cipher.DECRYPT_MODE, resolveKey(keyId), nonce);
+        try {
+            return cipher.doFinal(ciphertextWithTag);
+        } catch (AEADBadTagException e) {
+            throw new SecurityException("Decryption failed, authentication tag mismatch or data tampering detected", e);
+        } finally {
+            ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Decrypts the remaining bytes of the ciphertext buffer into the output buffer and returns the number of bytes written
+     */
+    public int decrypt(ByteBuffer ciphertextWithTag, byte[] nonce, ByteBuffer output) throws GeneralSecurityException {
+        Cipher cipher = initCipher(Cipher.DECRYPT_MODE, activeKey, nonce);
+        try {
+            return cipher.doFinal(ciphertextWithTag, output);
+        } catch (AEADBadTagException e) {
+            throw new SecurityException("Decryption failed, authentication tag mismatch or data tampering detected", e);
+        } finally {
+            ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Encrypts a UTF-8 string, convenience wrapper around the byte[] API
+     */
+    public byte[] encryptString(String message, byte[] nonce) throws GeneralSecurityException {
+        return encrypt(message.getBytes(StandardCharsets.UTF_8), nonce);
+    }
+
+    /**
+     * Decrypts to a UTF-8 string, convenience wrapper around the byte[] API
+     */
+    public String decryptToString(byte[] ciphertextWithTag, byte[] nonce) throws GeneralSecurityException {
+        return new String(decrypt(ciphertextWithTag, nonce), StandardCharsets.UTF_8);
+    }
+
+    public String decryptToString(String keyId, byte[] ciphertextWithTag, byte[] nonce) throws GeneralSecurityException {
+        return new String(decrypt(keyId, ciphertextWithTag, nonce), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encrypts the plaintext with the active key into a binary envelope: version byte, nonce, ciphertext with auth tag,
+     * in a single allocation
+     */
+    public byte[] seal(byte[] plaintext) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        try {
+            byte[] envelope = new byte[ENVELOPE_HEADER_LENGTH + plaintext.length + TAG_LENGTH];
+            envelope[0] = ENVELOPE_VERSION;
+            System.arraycopy(newNonce(), 0, envelope, 1, NONCE_LENGTH);
+            Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, activeKey, envelope, 1);
+            try {
+                cipher.doFinal(plaintext, 0, plaintext.length, envelope, ENVELOPE_HEADER_LENGTH);
+            } finally {
+                ciphers.release(cipher);
+            }
+            return envelope;
+        } finally {
+            sealTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Decrypts a binary envelope created by seal with the active key
+     */
+    public byte[] open(byte[] envelope) throws GeneralSecurityException {
+        return open(activeKeyId, envelope);
+    }
+
+    /**
+     * Decrypts a binary envelope created by seal with the given key, null means the default key
+     */
+    public byte[] open(String keyId, byte[] envelope) throws GeneralSecurityException {
+        if (envelope.length < ENVELOPE_HEADER_LENGTH + TAG_LENGTH || envelope[0] != ENVELOPE_VERSION) {
+            throw new SecurityException("Decryption failed, unsupported or corrupt message envelope");
+        }
+        SecretKey key = resolveKey(keyId);
+        long start = System.nanoTime();
+        Cipher cipher = initCipher(Cipher.DECRYPT_MODE, key, envelope, 1);
+        try {
+            return cipher.doFinal(envelope, ENVELOPE_HEADER_LENGTH, envelope.length - ENVELOPE_HEADER_LENGTH);
+        } catch (AEADBadTagException e) {
+            throw new SecurityException("Decryption failed, authentication tag mismatch or data tampering detected", e);
+        } finally {
+            ciphers.release(cipher);
+            openTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public byte[] sealString(String message) throws GeneralSecurityException {
+        return seal(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String openToString(byte[] envelope) throws GeneralSecurityException {
+        return new String(open(envelope), StandardCharsets.UTF_8);
+    }
+
+    public String openToString(String keyId, byte[] envelope) throws GeneralSecurityException {
+        return new String(open(keyId, envelope), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wraps an existing nonce and ciphertext in a binary envelope without re-encrypting, used when migrating legacy rows
+     */
+    public static byte[] toEnvelope(byte[] nonce, byte[] ciphertextWithTag) {
+        byte[] envelope = new byte[ENVELOPE_HEADER_LENGTH + ciphertextWithTag.length];
+        envelope[0] = ENVELOPE_VERSION;
+        System.arraycopy(nonce, 0, envelope, 1, NONCE_LENGTH);
+        System.arraycopy(ciphertextWithTag, 0, envelope, ENVELOPE_HEADER_LENGTH, ciphertextWithTag.length);
+        return envelope;
+    }
+
+    /**
+     * Timer for AES-GCM operations, registered globally so the static CryptoUtil path reports next to the engine
+     */
+    static Timer cryptoTimer(String operation, String format) {
+        return Timer.builder("crypto.aes.gcm")
+                .description("Time spent in AES-GCM encryption and decryption")
+                .tag("operation", operation)
+                .tag("format", format)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Re-initializes the calling thread's cipher, a fresh nonce per message keeps GCM's key/IV reuse check satisfied
+     */
+    private Cipher initCipher(int mode, SecretKey key, byte[] nonce) throws GeneralSecurityException {
+        if (nonce.length != NONCE_LENGTH) {
+            throw new IllegalArgumentException("Nonce must be " + NONCE_LENGTH + " bytes");
+        }
+        return initCipher(mode, key, nonce, 0);
+    }
+
+    /**
+     * The returned cipher must be handed back with ciphers.release once the operation is done
+     */
+    private Cipher initCipher(int mode, SecretKey key, byte[] source, int nonceOffset) throws GeneralSecurityException {
+        Cipher cipher = ciphers.acquire();
+        try {
+            cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, source, nonceOffset, NONCE_LENGTH));
+        } catch (GeneralSecurityException | RuntimeException e) {
+            ciphers.release(cipher);
+            throw e;
+        }
+        return cipher;
+    }
+
+    private SecretKey resolveKey(String keyId) {
+        SecretKey key = keys.get(keyId != null ? keyId : DEFAULT_KEY_ID);
+        if (key == null) {
+            throw new SecurityException("Decryption failed, unknown key id " + keyId);
+        }
+        return key;
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    }
+}
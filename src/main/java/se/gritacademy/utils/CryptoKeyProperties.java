@@ -0,0 +1,57 @@
+package se.gritacademy.utils;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Message encryption keys declared under crypto.* in application.properties. crypto.key is the original key with id
+ * "default", further keys are added as crypto.keys.&lt;id&gt; and crypto.active-key-id selects the one new messages use.
+ */
+@Component
+@ConfigurationProperties(prefix = "crypto")
+public class CryptoKeyProperties {
+
+    private String key;
+    private Map<String, String> keys = new HashMap<>();
+    private String activeKeyId = CryptoEngine.DEFAULT_KEY_ID;
+
+    public String getKey() {
+        return key;
+    }
+    public Map<String, String> getKeys() {
+        return keys;
+    }
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+    public void setKeys(Map<String, String> keys) {
+        this.keys = keys;
+    }
+    public void setActiveKeyId(String activeKeyId) {
+        this.activeKeyId = activeKeyId;
+    }
+
+    /**
+     * All keys by id, crypto.key included under the default id
+     */
+    public Map<String, String> getKeyring() {
+        Map<String, String> keyring = new LinkedHashMap<>();
+        if (key != null) {
+            keyring.put(CryptoEngine.DEFAULT_KEY_ID, key);
+        }
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            if (keyring.putIfAbsent(entry.getKey(), entry.getValue()) != null) {
+                throw new IllegalStateException("Crypto key id " + entry.getKey() + " is reserved for crypto.key");
+            }
+        }
+        return keyring;
+    }
+}
@@ -1,5 +1,7 @@
 package se.gritacademy.utils;
 
+import io.micrometer.core.instrument.Timer;
+
 import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -13,6 +15,8 @@ import java.util.Base64;
 public class CryptoUtil {
 
     private static final int GCM_TAG_LENGTH = 128;
+    private static final Timer encryptTimer = CryptoEngine.cryptoTimer("encrypt", "util");
+    private static final Timer decryptTimer = CryptoEngine.cryptoTimer("decrypt", "util");
 
     public static String hashKey(String key) throws Exception {
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
@@ -21,6 +25,14 @@ public class CryptoUtil {
     }
 
     public static String encryptMessage(String message, String secretKey) throws Exception {
+        return encryptTimer.recordCallable(() -> encrypt(message, secretKey));
+    }
+
+    public static String decryptMessage(String encryptedData, String secretKey) throws Exception {
+        return decryptTimer.recordCallable(() -> decrypt(encryptedData, secretKey));
+    }
+
+    private static String encrypt(String message, String secretKey) throws Exception {
         SecretKey key = createSecretKey(secretKey);
         Cipher cipher = initializeCipher(key);
         byte[] encryptedMessage = cipher.doFinal(message.getBytes());
@@ -29,7 +41,7 @@ public class CryptoUtil {
         return combineEncryptedData(encryptedMessage, nonce, authTag);
     }
 
-    public static String decryptMessage(String encryptedData, String secretKey) throws Exception {
+    private static String decrypt(String encryptedData, String secretKey) throws Exception {
         String[] parts = parseEncryptedData(encryptedData);
         byte[] encryptedBytes = Base64.getDecoder().decode(parts[0]);
         byte[] nonce = Base64.getDecoder().decode(parts[1]);
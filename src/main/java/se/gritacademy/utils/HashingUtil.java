@@ -1,5 +1,8 @@
 package se.gritacademy.utils;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import java.security.MessageDigest;
@@ -12,8 +15,24 @@ public class HashingUtil {
     private static final int ITERATIONS = 100_000;
     private static final int KEY_LENGTH = 256;
     private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final Timer hashTimer = Timer.builder("hashing.pbkdf2")
+            .description("Time spent deriving a PBKDF2 hash")
+            .tag("operation", "hash")
+            .register(Metrics.globalRegistry);
+    private static final Timer verifyTimer = Timer.builder("hashing.pbkdf2")
+            .description("Time spent deriving a PBKDF2 hash")
+            .tag("operation", "verify")
+            .register(Metrics.globalRegistry);
 
     public static String hashPasswordWithPBKDF2(String password) throws Exception {
+        return hashTimer.recordCallable(() -> hash(password));
+    }
+
+    public static boolean verifyPassword(String inputPassword, String storedHash) throws Exception {
+        return verifyTimer.recordCallable(() -> verify(inputPassword, storedHash));
+    }
+
+    private static String hash(String password) throws Exception {
         byte[] salt = new byte[16];
         new SecureRandom().nextBytes(salt);
         KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, KEY_LENGTH);
@@ -22,7 +41,7 @@ public class HashingUtil {
         return Base64.getEncoder().encodeToString(salt) + ":" + Base64.getEncoder().encodeToString(hash);
     }
 
-    public static boolean verifyPassword(String inputPassword, String storedHash) throws Exception {
+    private static boolean verify(String inputPassword, String storedHash) throws Exception {
         String[] parts = storedHash.split(":");
         byte[] salt = Base64.getDecoder().decode(parts[0]);
         byte[] hash = Base64.getDecoder().decode(parts[1]);
@@ -0,0 +1,42 @@
+package se.gritacademy.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Reuses instances of a class that is expensive to create and not thread-safe, such as Cipher or MessageDigest.
+ * Platform threads keep one instance each in a ThreadLocal. Virtual threads are created per request, so a
+ * ThreadLocal would be rebuilt for every request and they borrow from a small shared pool instead.
+ */
+final class InstancePool<T> {
+
+    private final Supplier<T> factory;
+    private final ThreadLocal<T> perThread;
+    private final ArrayBlockingQueue<T> shared;
+
+    InstancePool(Supplier<T> factory) {
+        this.factory = factory;
+        this.perThread = ThreadLocal.withInitial(factory);
+        this.shared = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Returns an instance for exclusive use by the calling thread until it is released
+     */
+    T acquire() {
+        if (!Thread.currentThread().isVirtual()) {
+            return perThread.get();
+        }
+        T instance = shared.poll();
+        return instance != null ? instance : factory.get();
+    }
+
+    /**
+     * Hands an instance back from the thread that acquired it, surplus instances beyond the pool size are dropped
+     */
+    void release(T instance) {
+        if (Thread.currentThread().isVirtual()) {
+            shared.offer(instance);
+        }
+    }
+}
@@ -2,45 +2,117 @@ package se.gritacademy.utils;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import se.gritacademy.controllers.AdminController;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import se.gritacademy.models.UserInfo;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 public class JwtUtil {
 
     private static final SecretKey jwtKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private static final JwtParser jwtParser = Jwts.parserBuilder().setSigningKey(jwtKey).build();
+    private static final int MAX_CACHED_TOKENS = 10_000;
+    private static final ConcurrentMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    private static final Timer generateTimer = Timer.builder("jwt.generate")
+            .description("Time spent signing a new JWT")
+            .register(Metrics.globalRegistry);
+    private static final Timer cacheHitTimer = parseTimer("hit");
+    private static final Timer cacheMissTimer = parseTimer("miss");
+    private static final InstancePool<MessageDigest> sha256 = new InstancePool<>(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    /**
+     * Claims of a token whose signature has already been verified, valid until the token's expiration
+     */
+    private record VerifiedToken(Claims claims, long expiresAtMillis) {
+    }
 
     public static String generateJwtToken(UserInfo user) {
-        return Jwts.builder()
+        return generateTimer.record(() -> Jwts.builder()
                 .setSubject(user.getEmail())
                 .claim("role", user.getRole())
                 .claim("blocked", user.isBlocked())
                 .setIssuedAt(Date.from(Instant.now()))
                 .setExpiration(Date.from(Instant.now().plusSeconds(60 * 60 * 24)))
                 .signWith(jwtKey, SignatureAlgorithm.HS256)
-                .compact();
+                .compact());
     }
 
+    /**
+     * Returns the claims of the token, repeat requests with the same token are served from the
+     * verified-token cache and skip signature verification and JSON parsing
+     */
     public static Claims parseJwtToken(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(jwtKey)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            if (claims.getExpiration().before(new Date())) {
-                throw new RuntimeException("JWT token has expired");
+        long start = System.nanoTime();
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.get(digest);
+        long now = System.currentTimeMillis();
+        if (cached != null) {
+            if (cached.expiresAtMillis() > now) {
+                cacheHitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return cached.claims();
             }
+            verifiedTokens.remove(digest, cached);
+        }
+        try {
+            Claims claims = verifyJwtToken(token);
+            cacheVerifiedToken(digest, claims, now);
             return claims;
-        } catch (JwtException e) {
-            throw new RuntimeException("Invalid JWT token", e);
+        } finally {
+            cacheMissTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Verifies the signature and parses the claims without consulting the cache, the parser throws
+     * ExpiredJwtException for expired tokens and another JwtException for forged or malformed ones
+     */
+    public static Claims verifyJwtToken(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * Caches verified claims until the token expires, expired entries are purged when the cache is full
+     * and nothing new is cached if it is still full afterwards
+     */
+    private static void cacheVerifiedToken(String digest, Claims claims, long now) {
+        if (verifiedTokens.size() >= MAX_CACHED_TOKENS) {
+            verifiedTokens.values().removeIf(token -> token.expiresAtMillis() <= now);
+            if (verifiedTokens.size() >= MAX_CACHED_TOKENS) {
+                return;
+            }
+        }
+        verifiedTokens.put(digest, new VerifiedToken(claims, claims.getExpiration().getTime()));
+    }
+
+    private static Timer parseTimer(String cache) {
+        return Timer.builder("jwt.parse")
+                .description("Time spent resolving the claims of a JWT, a miss includes signature verification")
+                .tag("cache", cache)
+                .register(Metrics.globalRegistry);
+    }
+
+    private static String digest(String token) {
+        MessageDigest digest = sha256.acquire();
+        try {
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } finally {
+            sha256.release(digest);
         }
     }
 }
@@ -0,0 +1,36 @@
+package se.gritacademy.utils;
+
+import se.gritacademy.models.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque keyset cursor pointing at the (date, id) of the last message on an inbox page
+ */
+public record MessageCursor(Date date, long id) {
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getDate(), message.getId());
+    }
+
+    public String encode() {
+        String raw = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a cursor, throws an IllegalArgumentException if it is malformed. The cursor is not signed, a crafted one
+     * only moves the starting point within the caller's own inbox since the page query is always scoped to the receiver.
+     */
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            return new MessageCursor(new Date(Long.parseLong(raw.substring(0, separator))), Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}